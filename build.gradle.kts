@@ -21,6 +21,7 @@ architectury.common(stonecutter.tree.branches.mapNotNull {
 })
 
 repositories {
+    mavenCentral()
     maven("https://maven.parchmentmc.org")
 }
 
@@ -34,6 +35,9 @@ dependencies {
     })
 
     modImplementation("net.fabricmc:fabric-loader:${prop("fabric", "loaderVersion")}")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.11.4")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 loom {
@@ -49,4 +53,8 @@ tasks {
     jar {
         from("LICENSE")
     }
+
+    test {
+        useJUnitPlatform()
+    }
 }
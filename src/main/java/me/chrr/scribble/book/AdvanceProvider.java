@@ -0,0 +1,29 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.client.gui.Font;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Provides the horizontal advance of single characters of rich text, which is
+ * the amount of pixels the cursor moves after drawing them.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+@FunctionalInterface
+public interface AdvanceProvider {
+    /**
+     * @param codePoint the character to measure.
+     * @param style     the style the character is drawn in.
+     * @return the advance of the character, in pixels.
+     */
+    float getAdvance(int codePoint, RichStyle style);
+
+    /**
+     * Get an advance provider that measures characters the same way the string
+     * splitter of the given font does. The advances are cached, see {@link GlyphAdvances}.
+     */
+    static AdvanceProvider of(Font font) {
+        return GlyphAdvances.of(font);
+    }
+}
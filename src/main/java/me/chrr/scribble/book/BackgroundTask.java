@@ -0,0 +1,123 @@
+package me.chrr.scribble.book;
+
+import me.chrr.scribble.Scribble;
+import net.minecraft.client.Minecraft;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A long-running piece of work on a book, like parsing and paginating a large paste,
+ * that runs on its own thread so the game doesn't freeze. The work shouldn't touch
+ * anything that belongs to the client thread, like fonts (see
+ * {@link GlyphAdvances#snapshot(CharSequence)}). Its result is handed back on the
+ * client thread, so it can be applied all at once, unless the task was cancelled.
+ * If the work fails, that's reported on the client thread as well.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class BackgroundTask<T> implements Paginator.Monitor {
+    private volatile float progress = 0f;
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+
+    private BackgroundTask() {
+    }
+
+    /**
+     * Start a new task on its own thread.
+     *
+     * @param name       the name of the thread.
+     * @param work       the work to do. If this returns null or throws, nothing is applied.
+     * @param onComplete the callback to apply the result with, called on the client thread.
+     * @return the task, which can be used to track and cancel it.
+     */
+    public static <T> BackgroundTask<T> start(String name, Work<T> work, Consumer<T> onComplete) {
+        return start(name, work, onComplete, () -> {
+        });
+    }
+
+    /**
+     * Start a new task on its own thread.
+     *
+     * @param name       the name of the thread.
+     * @param work       the work to do.
+     * @param onComplete the callback to apply the result with, called on the client thread.
+     * @param onFailure  the callback for when the work returned null or threw, called on
+     *                   the client thread. This isn't called if the task was cancelled.
+     * @return the task, which can be used to track and cancel it.
+     */
+    public static <T> BackgroundTask<T> start(String name, Work<T> work, Consumer<T> onComplete, Runnable onFailure) {
+        BackgroundTask<T> task = new BackgroundTask<>();
+
+        Thread thread = new Thread(() -> {
+            T result = null;
+            try {
+                result = work.run(task);
+            } catch (Exception e) {
+                Scribble.LOGGER.error("background task '{}' failed", name, e);
+            }
+
+            T finalResult = result;
+            Minecraft.getInstance().execute(() -> {
+                task.done = true;
+                if (task.cancelled) {
+                    return;
+                }
+
+                if (finalResult != null) {
+                    onComplete.accept(finalResult);
+                } else {
+                    onFailure.run();
+                }
+            });
+        }, name);
+
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Cancel the task. The work is asked to stop as soon as possible, and its result
+     * is thrown away if it still finishes.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return whether the task has finished, either by completing, failing or being cancelled.
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * @return the progress of the task, from 0 to 1.
+     */
+    public float getProgress() {
+        return this.progress;
+    }
+
+    public void setProgress(float progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void onProgress(int offset, int length) {
+        this.setProgress(length == 0 ? 1f : (float) offset / length);
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        @Nullable T run(BackgroundTask<T> task) throws Exception;
+    }
+}
@@ -0,0 +1,83 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A page of a book that's being edited. When opening a book, we usually only look at
+ * a couple of its pages, so pages read from a book are kept as their formatted string
+ * until their text is first needed. A page that was never changed is written back as
+ * the exact string it was read from, without parsing and serializing it again.
+ * <br>
+ * Pages are only meant to be used from a single thread.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class BookPage {
+    public static final BookPage EMPTY = new BookPage(null, RichText.EMPTY);
+
+    private final @Nullable String formattedString;
+    private @Nullable RichText text;
+
+    private BookPage(@Nullable String formattedString, @Nullable RichText text) {
+        this.formattedString = formattedString;
+        this.text = text;
+    }
+
+    /**
+     * Create a page from a formatted string, which is only parsed once it's needed.
+     */
+    public static BookPage fromFormattedString(String formattedString) {
+        return formattedString.isEmpty() ? EMPTY : new BookPage(formattedString, null);
+    }
+
+    public static BookPage of(RichText text) {
+        return text.isEmpty() ? EMPTY : new BookPage(null, text);
+    }
+
+    /**
+     * @return the text of the page, parsing it if that didn't happen yet.
+     */
+    public RichText getText() {
+        RichText text = this.text;
+        if (text == null) {
+            text = RichText.fromFormattedString(this.getFormattedString());
+            this.text = text;
+        }
+
+        return text;
+    }
+
+    /**
+     * @return the page as a formatted string. If the page was read from one, this is
+     * the original string.
+     */
+    public String getFormattedString() {
+        if (this.formattedString != null) {
+            return this.formattedString;
+        }
+
+        return this.getText().getAsFormattedString();
+    }
+
+    /**
+     * @return whether the page has no text. This doesn't parse the page: a formatted
+     * string is empty if it only has formatting codes.
+     */
+    public boolean isEmpty() {
+        String formattedString = this.formattedString;
+        if (this.text != null || formattedString == null) {
+            return this.getText().isEmpty();
+        }
+
+        // Like when parsing, every section sign takes the character after it as its code.
+        for (int i = 0; i < formattedString.length(); i += 2) {
+            if (formattedString.charAt(i) != '§') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
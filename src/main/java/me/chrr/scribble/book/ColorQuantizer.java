@@ -0,0 +1,88 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the formatting color closest to an arbitrary RGB color. This is used when
+ * importing text components, which can use any RGB color, into rich text, which
+ * can only use the sixteen formatting colors.
+ * <br>
+ * Colors are compared using the "redmean" approximation of perceived color distance,
+ * which weighs the channels depending on how red the colors are. Results are
+ * memoized per RGB value, as imported books tend to reuse the same few colors.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+final class ColorQuantizer {
+    // Once the cache grows beyond this size, we start over, to bound its memory usage.
+    private static final int MAX_CACHED_COLORS = 4096;
+
+    private static final ChatFormatting[] COLORS = Arrays.stream(ChatFormatting.values())
+            .filter((formatting) -> formatting.getColor() != null)
+            .toArray(ChatFormatting[]::new);
+
+    private static final Map<Integer, ChatFormatting> CACHE = new ConcurrentHashMap<>();
+
+    private ColorQuantizer() {
+    }
+
+    /**
+     * Find the formatting color that looks the closest to the given RGB color.
+     *
+     * @param rgb the color to match, as a 24-bit RGB value.
+     * @return the closest formatting color.
+     */
+    static ChatFormatting quantize(int rgb) {
+        rgb &= 0xffffff;
+
+        ChatFormatting cached = CACHE.get(rgb);
+        if (cached != null) {
+            return cached;
+        }
+
+        ChatFormatting closest = findClosest(rgb);
+        if (CACHE.size() >= MAX_CACHED_COLORS) {
+            CACHE.clear();
+        }
+
+        CACHE.put(rgb, closest);
+        return closest;
+    }
+
+    private static ChatFormatting findClosest(int rgb) {
+        int r = rgb >> 16 & 0xff;
+        int g = rgb >> 8 & 0xff;
+        int b = rgb & 0xff;
+
+        ChatFormatting closest = ChatFormatting.BLACK;
+        long distance = Long.MAX_VALUE;
+        for (ChatFormatting formatting : COLORS) {
+            //noinspection DataFlowIssue: we only keep formatting with a color.
+            int color = formatting.getColor();
+
+            int cr = color >> 16 & 0xff;
+            int dr = cr - r;
+            int dg = (color >> 8 & 0xff) - g;
+            int db = (color & 0xff) - b;
+
+            // Redmean: (2 + r/256) dR² + 4 dG² + (2 + (255 - r)/256) dB², scaled by 256.
+            int meanRed = (cr + r) >> 1;
+            long dist = (long) (512 + meanRed) * dr * dr
+                    + 1024L * dg * dg
+                    + (long) (767 - meanRed) * db * db;
+
+            if (dist < distance) {
+                closest = formatting;
+                distance = dist;
+            }
+        }
+
+        return closest;
+    }
+}
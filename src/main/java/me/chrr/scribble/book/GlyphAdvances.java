@@ -0,0 +1,149 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.StringSplitter;
+import net.minecraft.client.gui.Font;
+import net.minecraft.network.chat.Style;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A table of character advances for a font, indexed by code point and whether the
+ * character is bold. In book text, those are the only two things that change how wide
+ * a character is. The table is split into pages of 256 characters, which are filled
+ * from the vanilla font the first time a character on them is measured.
+ * <br>
+ * When fonts are reloaded, every table is invalidated by bumping the generation (see
+ * {@code FontManagerMixin}), after which the tables are lazily filled again.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class GlyphAdvances implements AdvanceProvider {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_COUNT = (Character.MAX_VALUE + 1) >>> PAGE_BITS;
+
+    private static final Map<Font, GlyphAdvances> INSTANCES = new WeakHashMap<>();
+    private static volatile int generation = 0;
+
+    private static final Style BOLD = Style.EMPTY.applyFormat(ChatFormatting.BOLD);
+
+    private final StringSplitter.WidthProvider widthProvider;
+    private float[][] regular = new float[PAGE_COUNT][];
+    private float[][] bold = new float[PAGE_COUNT][];
+    private int tableGeneration = generation;
+
+    private GlyphAdvances(StringSplitter.WidthProvider widthProvider) {
+        this.widthProvider = widthProvider;
+    }
+
+    /**
+     * @return the shared advance table of a font.
+     */
+    public static GlyphAdvances of(Font font) {
+        synchronized (INSTANCES) {
+            return INSTANCES.computeIfAbsent(font, (f) -> new GlyphAdvances(f.getSplitter().widthProvider));
+        }
+    }
+
+    /**
+     * Invalidate all advance tables, because the fonts they were filled from changed.
+     */
+    public static void invalidateAll() {
+        generation++;
+    }
+
+    /**
+     * @return a counter that changes every time the advance tables are invalidated.
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public float getAdvance(int codePoint, RichStyle style) {
+        boolean isBold = style.hasModifier(ChatFormatting.BOLD);
+        if (codePoint > Character.MAX_VALUE) {
+            // Characters outside the BMP are rare, so we don't bother caching them.
+            return this.widthProvider.getWidth(codePoint, isBold ? BOLD : Style.EMPTY);
+        }
+
+        return this.getPage(codePoint >>> PAGE_BITS, isBold)[codePoint & (PAGE_SIZE - 1)];
+    }
+
+    /**
+     * Take a snapshot of the advances of all characters in a piece of text, which can be
+     * used from other threads. This has to be called on the client thread, as it may need
+     * to measure characters using the font. Characters that weren't in the text have an
+     * advance of zero in the snapshot.
+     *
+     * @param text the characters to include in the snapshot.
+     * @return an advance provider that doesn't touch the font anymore.
+     */
+    public AdvanceProvider snapshot(CharSequence text) {
+        float[][] regular = new float[PAGE_COUNT][];
+        float[][] bold = new float[PAGE_COUNT][];
+        Map<Integer, Float> extraRegular = new HashMap<>();
+        Map<Integer, Float> extraBold = new HashMap<>();
+
+        // Lone surrogates are drawn as the replacement character.
+        String replacement = String.valueOf((char) 0xfffd);
+        for (CharSequence chars : List.of(text, replacement)) {
+            for (int i = 0; i < chars.length(); ) {
+                int codePoint = Character.codePointAt(chars, i);
+                i += Character.charCount(codePoint);
+
+                if (codePoint > Character.MAX_VALUE) {
+                    extraRegular.computeIfAbsent(codePoint, (c) -> this.widthProvider.getWidth(c, Style.EMPTY));
+                    extraBold.computeIfAbsent(codePoint, (c) -> this.widthProvider.getWidth(c, BOLD));
+                } else if (regular[codePoint >>> PAGE_BITS] == null) {
+                    // Filled pages are never modified, so it's safe to share them.
+                    regular[codePoint >>> PAGE_BITS] = this.getPage(codePoint >>> PAGE_BITS, false);
+                    bold[codePoint >>> PAGE_BITS] = this.getPage(codePoint >>> PAGE_BITS, true);
+                }
+            }
+        }
+
+        return (codePoint, style) -> {
+            boolean isBold = style.hasModifier(ChatFormatting.BOLD);
+            if (codePoint > Character.MAX_VALUE) {
+                return (isBold ? extraBold : extraRegular).getOrDefault(codePoint, 0f);
+            }
+
+            float[] page = (isBold ? bold : regular)[codePoint >>> PAGE_BITS];
+            return page == null ? 0f : page[codePoint & (PAGE_SIZE - 1)];
+        };
+    }
+
+    private float[] getPage(int index, boolean isBold) {
+        if (this.tableGeneration != generation) {
+            this.tableGeneration = generation;
+            this.regular = new float[PAGE_COUNT][];
+            this.bold = new float[PAGE_COUNT][];
+        }
+
+        float[][] table = isBold ? this.bold : this.regular;
+        float[] page = table[index];
+        if (page == null) {
+            page = this.fillPage(index, isBold);
+            table[index] = page;
+        }
+
+        return page;
+    }
+
+    private float[] fillPage(int page, boolean isBold) {
+        Style style = isBold ? BOLD : Style.EMPTY;
+        float[] advances = new float[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            advances[i] = this.widthProvider.getWidth(page << PAGE_BITS | i, style);
+        }
+
+        return advances;
+    }
+}
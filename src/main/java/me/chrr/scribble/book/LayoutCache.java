@@ -0,0 +1,154 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.client.gui.Font;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small cache of {@link TextLayout}s, keyed by text, width and font. A single edit
+ * lays out the same text from a couple of places (overflow checks, reflowing the
+ * display lines and rendering), and they all share the same layout through this.
+ * <br>
+ * On a miss, the most recently used layout with the same width and font is used as
+ * a starting point, as it's usually the previous version of the same page. Then only
+ * the lines around the change need to be wrapped again.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public class LayoutCache {
+    // Every text area has its own cache, and shows every page of the spreads it's on.
+    // We keep the layouts of its page on the current spread and the spreads around it,
+    // which are prefetched, and leave plenty of room for versions of the edited page.
+    private static final int MAX_ENTRIES = 16;
+    private static final int SMALL_EDIT_LENGTH = 64;
+
+    private final Map<Key, TextLayout> layouts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, TextLayout> eldest) {
+            return this.size() > MAX_ENTRIES;
+        }
+    };
+
+    private @Nullable Key lastKey = null;
+    private @Nullable TextLayout lastLayout = null;
+    private int glyphGeneration = GlyphAdvances.getGeneration();
+
+    /**
+     * Get the layout of a text, laying it out if it isn't cached yet.
+     *
+     * @param text     the text to lay out.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param font     the font to measure the text with.
+     * @return the layout of the text.
+     */
+    public TextLayout get(RichText text, int maxWidth, Font font) {
+        this.checkGeneration();
+
+        // Most lookups are for the same text as the last one, so we check that first.
+        TextLayout last = this.lastLayout;
+        Key lastKey = this.lastKey;
+        if (last != null && lastKey != null && last.getText() == text
+                && lastKey.maxWidth == maxWidth && lastKey.font == font) {
+            return last;
+        }
+
+        Key key = new Key(text, maxWidth, font);
+        TextLayout layout = this.layouts.get(key);
+        if (layout == null) {
+            if (last != null && lastKey != null && lastKey.maxWidth == maxWidth && lastKey.font == font) {
+                layout = last.relayout(text);
+            } else {
+                layout = TextLayout.of(text, maxWidth, AdvanceProvider.of(font));
+            }
+
+            this.layouts.put(key, layout);
+        }
+
+        this.lastKey = key;
+        this.lastLayout = layout;
+        return layout;
+    }
+
+    /**
+     * Lay out a text ahead of time, like a page that's likely to be shown next. Unlike
+     * {@link #get}, this doesn't use the last layout as a starting point, as the text
+     * is usually unrelated to it, and doesn't change which layout was used last.
+     */
+    public void prefetch(RichText text, int maxWidth, Font font) {
+        this.checkGeneration();
+
+        Key key = new Key(text, maxWidth, font);
+        if (!this.layouts.containsKey(key)) {
+            this.layouts.put(key, TextLayout.of(text, maxWidth, AdvanceProvider.of(font)));
+        }
+    }
+
+    /**
+     * @return whether the layout of a text is cached, for example because it was prefetched.
+     */
+    public boolean contains(RichText text, int maxWidth, Font font) {
+        return this.glyphGeneration == GlyphAdvances.getGeneration()
+                && this.layouts.containsKey(new Key(text, maxWidth, font));
+    }
+
+    /**
+     * Count the lines of a text, stopping as soon as there are more than {@code limit}.
+     * This is meant for line limit checks, which are often done on texts that are never
+     * shown. If we already have a layout, or it's a small edit of the last one, we use
+     * (and cache) the full layout, as it'll most likely be needed next. Otherwise, we
+     * only wrap as many lines as needed to answer the question, and don't cache anything.
+     *
+     * @return the amount of lines, or {@code limit + 1} if there are more than {@code limit}.
+     */
+    public int countLines(RichText text, int maxWidth, Font font, int limit) {
+        TextLayout last = this.lastLayout;
+        Key lastKey = this.lastKey;
+        boolean sameMetrics = last != null && lastKey != null && lastKey.maxWidth == maxWidth && lastKey.font == font
+                && this.glyphGeneration == GlyphAdvances.getGeneration();
+
+        if ((sameMetrics && Math.abs(text.getLength() - last.getText().getLength()) <= SMALL_EDIT_LENGTH)
+                || this.layouts.containsKey(new Key(text, maxWidth, font))) {
+            return Math.min(this.get(text, maxWidth, font).getLineCount(), limit + 1);
+        }
+
+        return TextLayout.countLines(text, maxWidth, AdvanceProvider.of(font), limit);
+    }
+
+    private void checkGeneration() {
+        // If the fonts were reloaded, none of our measurements are valid anymore.
+        if (this.glyphGeneration != GlyphAdvances.getGeneration()) {
+            this.clear();
+            this.glyphGeneration = GlyphAdvances.getGeneration();
+        }
+    }
+
+    /**
+     * Forget all cached layouts, for example when the font changed.
+     */
+    public void clear() {
+        this.layouts.clear();
+        this.lastKey = null;
+        this.lastLayout = null;
+    }
+
+    /**
+     * The text is compared by equality, which is cheap for RichText as its hash is
+     * memoized. The font is compared by identity.
+     */
+    private record Key(RichText text, int maxWidth, Font font) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && this.maxWidth == key.maxWidth
+                    && this.font == key.font && this.text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * this.text.hashCode() + this.maxWidth) + System.identityHashCode(this.font);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package me.chrr.scribble.book;
+
+import com.mojang.datafixers.util.Pair;
+import net.minecraft.ChatFormatting;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Splits a text into pages that each fit a maximum amount of lines. This is done
+ * greedily in a single pass over the text: every page is filled with as many lines
+ * as fit, and the next page starts where the next line would have started. As lines
+ * are wrapped independently of the lines before them, the lines of a page are the
+ * same as the lines of the text it was cut from.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class Paginator {
+    private Paginator() {
+    }
+
+    /**
+     * Split a text into pages.
+     *
+     * @param text     the text to split.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param maxLines the maximum amount of lines on a page.
+     * @param maxPages the maximum amount of pages to make.
+     * @param advances the advance provider used to measure characters.
+     * @return the pages, and where they start in the text.
+     */
+    public static Pages paginate(RichText text, int maxWidth, int maxLines, int maxPages, AdvanceProvider advances) {
+        return paginate(text, maxWidth, maxLines, maxPages, advances, null);
+    }
+
+    /**
+     * Split a text into pages, reporting the progress to a monitor after every page.
+     * When the monitor is cancelled, this stops early and returns the pages so far.
+     *
+     * @see #paginate(RichText, int, int, int, AdvanceProvider)
+     */
+    public static Pages paginate(RichText text, int maxWidth, int maxLines, int maxPages,
+                                 AdvanceProvider advances, @Nullable Monitor monitor) {
+        int length = text.getLength();
+
+        List<RichText> pages = new ArrayList<>();
+        int[] starts = new int[Math.max(1, Math.min(maxPages, 16))];
+
+        int start = 0;
+        while (start < length && pages.size() < maxPages) {
+            // We wrap one line more than fits, so we know where the next page would start.
+            TextLayout layout = TextLayout.of(text, maxWidth, advances, start, maxLines + 1);
+
+            int end = Math.max(start + 1, pageEnd(layout, maxLines));
+
+            if (pages.size() == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+
+            starts[pages.size()] = start;
+            pages.add(text.subText(start, end));
+            start = end;
+
+            if (monitor != null) {
+                monitor.onProgress(start, length);
+                if (monitor.isCancelled()) {
+                    break;
+                }
+            }
+        }
+
+        return new Pages(pages, Arrays.copyOf(starts, pages.size()), start);
+    }
+
+    /**
+     * Find how much of a text fits when it's inserted between two other texts, without
+     * the result getting longer than a maximum amount of lines. We first fill the page
+     * with the text before and the inserted text in a single pass, which gives the
+     * longest prefix that could fit. Only if there's text after the insertion, we walk
+     * back from there over the places the inserted text can be cut, which are the
+     * starts of its lines and words, until the text after it fits as well.
+     * <br>
+     * For every place we try, the lines before it stay the same, so we only wrap the
+     * text after it, starting at the line it's on.
+     *
+     * @param before   the text before the insertion.
+     * @param insert   the text to insert.
+     * @param after    the text after the insertion.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param maxLines the maximum amount of lines.
+     * @param advances the advance provider used to measure characters.
+     * @return the length of the longest prefix of {@code insert} that fits.
+     */
+    public static int fit(RichText before, RichText insert, RichText after,
+                          int maxWidth, int maxLines, AdvanceProvider advances) {
+        int start = before.getLength();
+        RichText head = before.insert(start, insert);
+        TextLayout layout = TextLayout.of(head, maxWidth, advances, 0, maxLines + 1);
+
+        int fit = Math.max(0, pageEnd(layout, maxLines) - start);
+        if (after.isEmpty() || fit == 0) {
+            return fit;
+        }
+
+        String plain = head.getPlainText();
+        for (int length = fit; length > 0; length--) {
+            int offset = start + length;
+            int line = layout.lineAt(offset);
+
+            boolean wordStart = plain.charAt(offset - 1) == ' ';
+            boolean lineStart = layout.getLineStart(line) == offset;
+            if ((length == fit || wordStart || lineStart) && fitsWith(layout, head, offset, after, maxLines)) {
+                return length;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Check if a text still fits in a maximum amount of lines when it's cut off at an
+     * offset and another text is put after it, given its layout.
+     */
+    private static boolean fitsWith(TextLayout layout, RichText text, int offset, RichText after, int maxLines) {
+        // Lines that looked ahead past the offset may be broken differently now.
+        int line = layout.lineAt(offset);
+        while (line > 0 && layout.getScanEnd(line - 1) >= offset) {
+            line--;
+        }
+
+        int from = layout.getLineStart(line);
+        RichText rest = text.subText(from, offset).insert(offset - from, after);
+        return line + TextLayout.countLines(rest, layout.getMaxWidth(), layout.getAdvances(), maxLines - line) <= maxLines;
+    }
+
+    /**
+     * Find where a page ends, given the layout of the text starting at the page start.
+     */
+    private static int pageEnd(TextLayout layout, int maxLines) {
+        String plain = layout.getText().getPlainText();
+        if (layout.getLineCount() <= maxLines) {
+            return plain.length();
+        }
+
+        // If the last line on the page ends with a newline, we can't include it, as
+        // that would add an empty line. It goes to the start of the next page instead.
+        int lastLineEnd = layout.getLineEnd(maxLines - 1);
+        if (lastLineEnd < plain.length() && plain.charAt(lastLineEnd) == '\n') {
+            return lastLineEnd;
+        } else {
+            return layout.getLineStart(maxLines);
+        }
+    }
+
+    /**
+     * Pour the text of a range of pages into new pages, so every page is filled as far
+     * as it can be. Most page boundaries are soft: the text on both sides flows together,
+     * with a space in between if neither side already has whitespace there. Three kinds
+     * of pages keep their boundaries:
+     * <ul>
+     *     <li>a page that ends with a newline is a page break the writer put there, so
+     *     the text after it always starts on a new page. The newline stays at the end
+     *     of the page before the break, so reflowing again keeps the break;</li>
+     *     <li>a full page that the text after it would flow onto. When a page break
+     *     comes right after a full page, there's no room for its newline, so this is
+     *     how it's kept instead. If the page isn't full anymore after reflowing, the
+     *     newline is put back;</li>
+     *     <li>an empty page is kept as an empty page.</li>
+     * </ul>
+     *
+     * @param pages    the pages to reflow.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param maxLines the maximum amount of lines on a page.
+     * @param maxPages the maximum amount of pages to make.
+     * @param advances the advance provider used to measure characters.
+     * @return the new pages, or null if the text doesn't fit in {@code maxPages} pages.
+     */
+    public static @Nullable List<RichText> reflow(List<RichText> pages, int maxWidth, int maxLines,
+                                                  int maxPages, AdvanceProvider advances) {
+        List<RichText> result = new ArrayList<>();
+        RichTextBuilder builder = new RichTextBuilder();
+        // The last character and style of the text since the last page break.
+        char lastChar = '\n';
+        RichStyle lastStyle = RichStyle.DEFAULT;
+
+        for (int i = 0; i < pages.size(); i++) {
+            RichText page = pages.get(i);
+            if (page.isEmpty()) {
+                if (!flush(builder.build(), result, maxWidth, maxLines, maxPages, advances, false)
+                        || result.size() >= maxPages) {
+                    return null;
+                }
+
+                result.add(page);
+                builder = new RichTextBuilder();
+                lastChar = '\n';
+                continue;
+            }
+
+            String plain = page.getPlainText();
+            if (!Character.isWhitespace(lastChar) && !Character.isWhitespace(plain.charAt(0))) {
+                // Keep the words on both sides of the boundary apart.
+                builder.append(" ", lastStyle);
+            }
+
+            builder.append(page);
+            lastChar = plain.charAt(plain.length() - 1);
+
+            if (lastChar != '\n') {
+                Pair<@Nullable ChatFormatting, Set<ChatFormatting>> format = page.getCommonFormat(plain.length(), plain.length());
+                lastStyle = RichStyle.of(Objects.requireNonNullElse(format.getFirst(), ChatFormatting.BLACK), format.getSecond());
+            }
+
+            boolean pageBreak = lastChar == '\n' || (i + 1 < pages.size()
+                    && keepsBoundary(page, pages.get(i + 1), lastStyle, maxWidth, maxLines, advances));
+            if (pageBreak) {
+                if (lastChar != '\n') {
+                    // The text before the boundary may not fill its page anymore, so we
+                    // put the page break there as a newline, like the writer would have.
+                    builder.append("\n", lastStyle);
+                }
+
+                // A page with only a newline is one the writer made, so that one stays.
+                if (!flush(builder.build(), result, maxWidth, maxLines, maxPages, advances, !plain.equals("\n"))) {
+                    return null;
+                }
+
+                builder = new RichTextBuilder();
+                lastChar = '\n';
+            }
+        }
+
+        if (!flush(builder.build(), result, maxWidth, maxLines, maxPages, advances, false)) {
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Check if a full page keeps its boundary with the page after it. A page is full
+     * when it fits, but a newline at its end wouldn't. Joining the two shouldn't change
+     * the full page, so the text of the next page has to start on a new page anyway,
+     * exactly where the page ends. That's how we cut pages ourselves.
+     */
+    private static boolean keepsBoundary(RichText page, RichText next, RichStyle style,
+                                         int maxWidth, int maxLines, AdvanceProvider advances) {
+        String plain = page.getPlainText();
+        if (next.isEmpty() || TextLayout.countLines(page, maxWidth, advances, maxLines) > maxLines) {
+            return false;
+        }
+
+        RichText withBreak = new RichTextBuilder(page).append("\n", style).build();
+        if (TextLayout.countLines(withBreak, maxWidth, advances, maxLines) <= maxLines) {
+            return false;
+        }
+
+        RichTextBuilder builder = new RichTextBuilder(page);
+        if (!Character.isWhitespace(plain.charAt(plain.length() - 1))
+                && !Character.isWhitespace(next.getPlainText().charAt(0))) {
+            builder.append(" ", style);
+        }
+
+        TextLayout layout = TextLayout.of(builder.append(next).build(), maxWidth, advances, 0, maxLines + 1);
+        return pageEnd(layout, maxLines) != plain.length();
+    }
+
+    /**
+     * Split a run of text that's being reflowed into pages, and add them to the result.
+     * If the run ends with a page break right after a full page, its newline would end
+     * up on a page of its own. We can leave that page out, as the full page already
+     * ends the run.
+     *
+     * @param dropBreak whether to leave out a last page with only the newline.
+     * @return false if the text didn't fit in the pages that are left.
+     */
+    private static boolean flush(RichText text, List<RichText> result, int maxWidth, int maxLines,
+                                 int maxPages, AdvanceProvider advances, boolean dropBreak) {
+        // We allow one page more, in case it's the newline we leave out.
+        Pages split = paginate(text, maxWidth, maxLines, maxPages - result.size() + 1, advances);
+        List<RichText> pages = split.pages();
+        if (dropBreak && pages.size() > 1 && pages.getLast().getPlainText().equals("\n")) {
+            pages = pages.subList(0, pages.size() - 1);
+        }
+
+        if (split.end() < text.getLength() || result.size() + pages.size() > maxPages) {
+            return false;
+        }
+
+        result.addAll(pages);
+        return true;
+    }
+
+    /**
+     * The result of splitting a text into pages.
+     *
+     * @param pages  the text of every page.
+     * @param starts the offset in the original text where every page starts.
+     * @param end    the offset after the last page. This is less than the length of the
+     *               text if we ran out of pages before the whole text was split.
+     */
+    public record Pages(List<RichText> pages, int[] starts, int end) {
+    }
+
+    /**
+     * Gets notified of the progress of a long pagination, and can cancel it.
+     */
+    public interface Monitor {
+        void onProgress(int offset, int length);
+
+        boolean isCancelled();
+    }
+}
@@ -0,0 +1,243 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Style;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The style of a piece of rich text, consisting of a color and a set of modifiers.
+ * <br>
+ * Styles are interned: there is exactly one instance for every combination of color
+ * and modifiers, so they can be compared by identity. Internally, the style is packed
+ * into a single integer, where the lowest bits are a bitmask of the modifiers and the
+ * remaining bits are the index of the color.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class RichStyle {
+    private static final ChatFormatting[] COLORS = Arrays.stream(ChatFormatting.values())
+            .filter(ChatFormatting::isColor)
+            .toArray(ChatFormatting[]::new);
+
+    // These are ordered by their formatting code, so iterating over the bits
+    // gives the modifiers in a predictable order.
+    private static final ChatFormatting[] MODIFIERS = Arrays.stream(ChatFormatting.values())
+            .filter(ChatFormatting::isFormat)
+            .sorted(Comparator.comparingInt(ChatFormatting::getChar))
+            .toArray(ChatFormatting[]::new);
+
+    private static final int MODIFIER_BITS = MODIFIERS.length;
+    private static final int MODIFIER_MASK = (1 << MODIFIER_BITS) - 1;
+
+    // Lookup tables indexed by the ordinal of a ChatFormatting.
+    private static final int[] COLOR_INDEX = new int[ChatFormatting.values().length];
+    private static final int[] MODIFIER_BIT = new int[ChatFormatting.values().length];
+
+    private static final Set<ChatFormatting>[] MODIFIER_SETS;
+    private static final ChatFormatting[][] MODIFIER_ARRAYS;
+    private static final RichStyle[] STYLES;
+
+    static {
+        Arrays.fill(COLOR_INDEX, -1);
+        for (int i = 0; i < COLORS.length; i++) {
+            COLOR_INDEX[COLORS[i].ordinal()] = i;
+        }
+
+        for (int i = 0; i < MODIFIERS.length; i++) {
+            MODIFIER_BIT[MODIFIERS[i].ordinal()] = 1 << i;
+        }
+
+        //noinspection unchecked
+        MODIFIER_SETS = new Set[1 << MODIFIER_BITS];
+        MODIFIER_ARRAYS = new ChatFormatting[1 << MODIFIER_BITS][];
+        for (int mask = 0; mask < MODIFIER_SETS.length; mask++) {
+            Set<ChatFormatting> modifiers = EnumSet.noneOf(ChatFormatting.class);
+            for (int i = 0; i < MODIFIERS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    modifiers.add(MODIFIERS[i]);
+                }
+            }
+
+            MODIFIER_SETS[mask] = Collections.unmodifiableSet(modifiers);
+            MODIFIER_ARRAYS[mask] = modifiers.toArray(new ChatFormatting[0]);
+        }
+
+        STYLES = new RichStyle[COLORS.length << MODIFIER_BITS];
+        for (int packed = 0; packed < STYLES.length; packed++) {
+            STYLES[packed] = new RichStyle(packed);
+        }
+    }
+
+    public static final RichStyle DEFAULT = of(ChatFormatting.BLACK, Set.of());
+
+    private final int packed;
+    private final ChatFormatting color;
+    private final Set<ChatFormatting> modifiers;
+
+    private static final int MAX_RESOLVED_STYLES = 4;
+
+    // The last vanilla styles we resolved, keyed by the identity of the base style they
+    // were resolved against. There are only a few base styles in use at a time (the edit
+    // box, the page widget, hovered text), so a small array is enough. The array is never
+    // changed after it's published, so sharing it between threads without locking is safe.
+    private ResolvedStyle[] resolved = new ResolvedStyle[0];
+
+    private RichStyle(int packed) {
+        this.packed = packed;
+        this.color = COLORS[packed >>> MODIFIER_BITS];
+        this.modifiers = MODIFIER_SETS[packed & MODIFIER_MASK];
+    }
+
+    /**
+     * Get the canonical style instance for a color and set of modifiers.
+     *
+     * @param color     the color of the style. This has to be a color, not a modifier.
+     * @param modifiers the modifiers of the style. Any non-modifier formatting is ignored.
+     * @return the interned style.
+     */
+    public static RichStyle of(ChatFormatting color, Set<ChatFormatting> modifiers) {
+        return of(color, maskOf(modifiers));
+    }
+
+    /**
+     * Get the canonical style instance for a color and a bitmask of modifiers.
+     *
+     * @see #maskOf(Set)
+     */
+    public static RichStyle of(ChatFormatting color, int modifierMask) {
+        int colorIndex = COLOR_INDEX[color.ordinal()];
+        if (colorIndex < 0) {
+            throw new IllegalArgumentException(color.getName() + " is not a color");
+        }
+
+        return STYLES[colorIndex << MODIFIER_BITS | (modifierMask & MODIFIER_MASK)];
+    }
+
+    /**
+     * @return the bitmask representing the given set of modifiers.
+     */
+    public static int maskOf(Set<ChatFormatting> modifiers) {
+        int mask = 0;
+        for (ChatFormatting modifier : modifiers) {
+            mask |= MODIFIER_BIT[modifier.ordinal()];
+        }
+
+        return mask;
+    }
+
+    /**
+     * @return the bitmask bit of a single modifier, or zero if the formatting isn't a modifier.
+     */
+    public static int maskOf(ChatFormatting modifier) {
+        return MODIFIER_BIT[modifier.ordinal()];
+    }
+
+    /**
+     * @return the shared, unmodifiable set of modifiers represented by the bitmask.
+     */
+    public static Set<ChatFormatting> modifierSet(int modifierMask) {
+        return MODIFIER_SETS[modifierMask & MODIFIER_MASK];
+    }
+
+    /**
+     * Append the formatting codes for the modifiers in the bitmask to a string,
+     * ordered by their formatting code.
+     */
+    public static void appendModifierCodes(StringBuilder out, int modifierMask) {
+        for (int i = 0; i < MODIFIERS.length; i++) {
+            if ((modifierMask & (1 << i)) != 0) {
+                out.append(MODIFIERS[i]);
+            }
+        }
+    }
+
+    public RichStyle withColor(ChatFormatting color) {
+        return of(color, this.modifierMask());
+    }
+
+    /**
+     * @param add    bitmask of the modifiers to add.
+     * @param remove bitmask of the modifiers to remove.
+     * @return the style with the modifiers applied.
+     */
+    public RichStyle withModifiers(int add, int remove) {
+        int modifierMask = (this.modifierMask() | add) & ~remove & MODIFIER_MASK;
+        return STYLES[(this.packed & ~MODIFIER_MASK) | modifierMask];
+    }
+
+    /**
+     * Get the vanilla style for this rich style, applied on top of a base style. The
+     * result is cached per base style instance, so visiting the same text repeatedly
+     * doesn't create new styles. Base styles are compared by identity, as comparing
+     * them by equality would cost as much as resolving the style again.
+     *
+     * @param base the style to apply the color and modifiers to.
+     * @return the resolved vanilla style.
+     */
+    public Style toStyle(Style base) {
+        ResolvedStyle[] resolved = this.resolved;
+        for (ResolvedStyle entry : resolved) {
+            if (entry.base == base) {
+                return entry.style;
+            }
+        }
+
+        Style style = base
+                .applyFormats(MODIFIER_ARRAYS[this.modifierMask()])
+                .applyFormat(this.color);
+
+        // Put the new entry first, dropping the oldest one if we're full.
+        int kept = Math.min(resolved.length, MAX_RESOLVED_STYLES - 1);
+        ResolvedStyle[] updated = new ResolvedStyle[kept + 1];
+        updated[0] = new ResolvedStyle(base, style);
+        System.arraycopy(resolved, 0, updated, 1, kept);
+        this.resolved = updated;
+        return style;
+    }
+
+    public boolean hasModifier(ChatFormatting modifier) {
+        return (this.packed & maskOf(modifier)) != 0;
+    }
+
+    public ChatFormatting color() {
+        return this.color;
+    }
+
+    public Set<ChatFormatting> modifiers() {
+        return this.modifiers;
+    }
+
+    public int modifierMask() {
+        return this.packed & MODIFIER_MASK;
+    }
+
+    /**
+     * @return the style packed into an integer, unique for every style.
+     */
+    public int packed() {
+        return this.packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.packed;
+    }
+
+    @Override
+    public String toString() {
+        return "RichStyle{" +
+                "color=" + color.getName() +
+                ", modifiers=" + modifiers +
+                '}';
+    }
+
+    private record ResolvedStyle(Style base, Style style) {
+    }
+}
@@ -10,7 +10,6 @@ import org.jspecify.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 /**
  * A string of text that can have formatting applied to various parts
@@ -21,6 +20,12 @@ import java.util.stream.Collectors;
  * Note that a RichText instance is immutable, and every method will create a
  * new instance. Treat this class as a sort of `String` alternative.
  * <br>
+ * The segments are stored in a persistent balanced tree (see {@link SegmentTree}),
+ * so editing, splitting and joining text takes logarithmic time in the amount of
+ * segments, and different versions of the same text share most of their structure.
+ * The segments are always kept canonical: no segment is empty, and no two neighbouring
+ * segments share the same style.
+ * <br>
  * We could've used {@link net.minecraft.network.chat.MutableComponent} for this,
  * but we need something more flexible to easily edit portions, and make sure the
  * amount of segments doesn't spiral out of control.
@@ -29,17 +34,34 @@ import java.util.stream.Collectors;
  */
 @NullMarked
 public class RichText implements FormattedText {
-    public static final RichText EMPTY = new RichText(List.of());
+    public static final RichText EMPTY = new RichText((SegmentTree.Node) null);
+
+    // Sub-texts spanning at most this many segments are copied straight out of the
+    // segment index. Anything bigger is split out of the tree, sharing its structure.
+    private static final int MAX_SLICED_SEGMENTS = 8;
+
+    private final SegmentTree.@Nullable Node root;
 
-    private final List<Segment> segments;
+    // Derived views of the text, computed lazily. As RichText is immutable, they never
+    // change once computed. Races only cause the same value to be computed twice.
+    private @Nullable SegmentIndex index = null;
+    private @Nullable String plainText = null;
+    private @Nullable String formattedString = null;
+    private int hash = 0;
+    private boolean hashIsZero = false;
+
+    private RichText(SegmentTree.@Nullable Node root) {
+        this.root = root;
+    }
 
     /**
-     * Create a new RichText object from existing segments.
+     * Create a new RichText object from existing segments. Empty segments are
+     * dropped, and neighbouring segments with the same style are merged.
      *
      * @param segments segments to inherit.
      */
     public RichText(List<Segment> segments) {
-        this.segments = segments;
+        this(SegmentTree.fromList(mergeSimilarSegments(segments)));
     }
 
     /**
@@ -50,7 +72,17 @@ public class RichText implements FormattedText {
      * @param modifiers modifiers of the segment.
      */
     public RichText(String text, ChatFormatting color, Set<ChatFormatting> modifiers) {
-        this(List.of(new Segment(text, color, modifiers)));
+        this(text, RichStyle.of(color, modifiers));
+    }
+
+    /**
+     * Create a new single-segment RichText object from existing text and style.
+     *
+     * @param text  text of the segment.
+     * @param style style of the segment.
+     */
+    public RichText(String text, RichStyle style) {
+        this(List.of(new Segment(text, style)));
     }
 
     /**
@@ -63,52 +95,34 @@ public class RichText implements FormattedText {
      * @return a RichText instance containing exactly the same text as the input.
      */
     public static RichText fromFormattedString(String input) {
-        List<Segment> segments = new ArrayList<>();
-
-        StringBuilder text = new StringBuilder();
-        ChatFormatting color = ChatFormatting.BLACK;
-        Set<ChatFormatting> modifiers = new HashSet<>();
-
-        for (int i = 0; i < input.length(); ) {
-            int codePoint = input.codePointAt(i);
-            i += Character.charCount(codePoint);
-
-            if (codePoint == (int) '§') {
-                if (i >= input.length()) {
-                    break;
+        RichTextBuilder builder = new RichTextBuilder();
+        RichStyle style = RichStyle.DEFAULT;
+
+        // Text between formatting codes is appended in one go.
+        int textStart = 0;
+        for (int i = input.indexOf('§'); i >= 0; i = input.indexOf('§', textStart)) {
+            builder.append(input.substring(textStart, i), style);
+            if (i + 1 >= input.length()) {
+                return builder.build();
+            }
+
+            ChatFormatting formatting = ChatFormatting.getByCode(input.charAt(i + 1));
+            if (formatting != null) {
+                if (formatting.isFormat()) {
+                    style = style.withModifiers(RichStyle.maskOf(formatting), 0);
+                } else if (formatting == ChatFormatting.RESET) {
+                    // We get rid of any RESET color codes, as they act weirdly in books.
+                    style = RichStyle.DEFAULT;
+                } else {
+                    style = RichStyle.of(formatting, 0);
                 }
-
-                char code = input.charAt(i);
-                i++;
-
-                ChatFormatting formatting = ChatFormatting.getByCode(code);
-                if (formatting != null) {
-                    if (!text.isEmpty()) {
-                        segments.add(new Segment(text.toString(), color, new HashSet<>(modifiers)));
-                        text = new StringBuilder();
-                    }
-
-                    if (formatting.isFormat()) {
-                        modifiers.add(formatting);
-                    } else if (formatting == ChatFormatting.RESET) {
-                        // We get rid of any RESET color codes, as they act weirdly in books.
-                        color = ChatFormatting.BLACK;
-                        modifiers.clear();
-                    } else {
-                        color = formatting;
-                        modifiers.clear();
-                    }
-                }
-            } else {
-                text.appendCodePoint(codePoint);
             }
-        }
 
-        if (!text.isEmpty()) {
-            segments.add(new Segment(text.toString(), color, modifiers));
+            textStart = i + 2;
         }
 
-        return new RichText(segments);
+        builder.append(input.substring(textStart), style);
+        return builder.build();
     }
 
     /**
@@ -121,128 +135,112 @@ public class RichText implements FormattedText {
      * @return the closest approximation of the given formatted text.
      */
     public static RichText fromFormattedTextLossy(FormattedText text) {
-        List<Segment> segments = new ArrayList<>();
+        RichTextBuilder builder = new RichTextBuilder();
 
         AtomicReference<ChatFormatting> color = new AtomicReference<>(ChatFormatting.BLACK);
         text.visit((style, string) -> {
             if (style.getColor() != null) {
-                color.set(formattingFromTextColor(style.getColor()));
+                color.set(ColorQuantizer.quantize(style.getColor().getValue()));
             }
 
-            Set<ChatFormatting> modifiers = new HashSet<>();
-            if (style.isBold()) modifiers.add(ChatFormatting.BOLD);
-            if (style.isItalic()) modifiers.add(ChatFormatting.ITALIC);
-            if (style.isUnderlined()) modifiers.add(ChatFormatting.UNDERLINE);
-            if (style.isObfuscated()) modifiers.add(ChatFormatting.OBFUSCATED);
-            if (style.isStrikethrough()) modifiers.add(ChatFormatting.STRIKETHROUGH);
+            int modifiers = 0;
+            if (style.isBold()) modifiers |= RichStyle.maskOf(ChatFormatting.BOLD);
+            if (style.isItalic()) modifiers |= RichStyle.maskOf(ChatFormatting.ITALIC);
+            if (style.isUnderlined()) modifiers |= RichStyle.maskOf(ChatFormatting.UNDERLINE);
+            if (style.isObfuscated()) modifiers |= RichStyle.maskOf(ChatFormatting.OBFUSCATED);
+            if (style.isStrikethrough()) modifiers |= RichStyle.maskOf(ChatFormatting.STRIKETHROUGH);
 
-            segments.add(new Segment(string, color.get(), modifiers));
+            builder.append(string, RichStyle.of(color.get(), modifiers));
             return Optional.empty();
         }, Style.EMPTY.applyFormat(ChatFormatting.BLACK));
 
-        return new RichText(segments);
+        return builder.build();
     }
 
     /**
-     * Find the closest formatting code that represents the given color.
+     * Get the canonical form of a list of segments, by removing empty segments
+     * and merging neighbouring segments that have the same style.
      *
-     * @param color the TextColor to convert. This can be any RGB color.
-     * @return the formatting code best representing the given text color.
+     * @param segments the segments to merge, in order.
+     * @return the merged segments. This is the same list if nothing changed.
      */
-    private static ChatFormatting formattingFromTextColor(TextColor color) {
-        // If the color has a name, we can look it up directly.
-        ChatFormatting byName = ChatFormatting.getByName(color.serialize());
-        if (byName != null) {
-            return byName;
+    private static List<Segment> mergeSimilarSegments(List<Segment> segments) {
+        boolean canonical = true;
+        for (int i = 0; i < segments.size() && canonical; i++) {
+            canonical = !segments.get(i).text.isEmpty()
+                    && (i == 0 || !segments.get(i - 1).hasSameStyle(segments.get(i)));
         }
 
-        // Otherwise, let's find the closest matching color.
-        ChatFormatting closest = ChatFormatting.BLACK;
-        int distance = Integer.MAX_VALUE;
-        for (ChatFormatting formatting : ChatFormatting.values()) {
-            Integer colorValue = formatting.getColor();
-            if (colorValue == null) {
+        if (canonical) {
+            return segments;
+        }
+
+        List<Segment> merged = new ArrayList<>(segments.size());
+        StringBuilder text = new StringBuilder();
+        @Nullable RichStyle style = null;
+
+        for (Segment segment : segments) {
+            if (segment.text.isEmpty()) {
                 continue;
             }
 
-            // Find the Euclidean distance between the two colors (without taking the square root).
-            int dr = Math.abs((colorValue >> 16 & 0xff) - (color.getValue() >> 16 & 0xff));
-            int dg = Math.abs((colorValue >> 8 & 0xff) - (color.getValue() >> 8 & 0xff));
-            int db = Math.abs((colorValue & 0xff) - (color.getValue() & 0xff));
+            if (segment.style != style) {
+                if (style != null) {
+                    merged.add(new Segment(text.toString(), style));
+                }
 
-            int dist = dr + dg + db;
-            if (dist < distance) {
-                closest = formatting;
-                distance = dist;
+                text.setLength(0);
+                style = segment.style;
             }
+
+            text.append(segment.text);
+        }
+
+        if (style != null) {
+            merged.add(new Segment(text.toString(), style));
         }
 
-        return closest;
+        return merged;
     }
 
     /**
-     * Merges consecutive segments with the same color and modifiers attributes into a single segment.
-     *
-     * @return a new {@link RichText} object that has the same contents in potentially fewer segments.
+     * @return the flattened segment index of this text, building it if needed.
      */
-    private RichText mergeSimilarSegments() {
-        if (this.segments.isEmpty()) {
-            return this;
+    SegmentIndex getIndex() {
+        SegmentIndex index = this.index;
+        if (index == null) {
+            this.index = index = this.root == null ? SegmentIndex.EMPTY : SegmentIndex.of(this.root);
         }
 
-        List<Segment> mergedSegments = new ArrayList<>();
-        Segment previousSegment = null;
-
-        for (Segment segment : this.segments) {
-            if (previousSegment == null) {
-                previousSegment = segment;
-                continue;
-            }
-
-            boolean isColorMatching = previousSegment.color == segment.color;
-            boolean areModifiersMatching = segment.modifiers.containsAll(previousSegment.modifiers())
-                    && previousSegment.modifiers().containsAll(segment.modifiers);
-
-            if (isColorMatching && areModifiersMatching) {
-                previousSegment = new Segment(
-                        previousSegment.text + segment.text,
-                        previousSegment.color,
-                        previousSegment.modifiers
-                );
-            } else {
-                mergedSegments.add(previousSegment);
-                previousSegment = segment;
-            }
-        }
-
-        mergedSegments.add(previousSegment);
-
-        return new RichText(mergedSegments);
+        return index;
     }
 
     /**
      * @return the text without any formatting.
      */
     public String getPlainText() {
-        return segments.stream()
-                .map(segment -> segment.text)
-                .collect(Collectors.joining());
+        String plainText = this.plainText;
+        if (plainText == null) {
+            StringBuilder out = new StringBuilder(this.getLength());
+            SegmentTree.iterator(this.root).forEachRemaining((segment) -> out.append(segment.text));
+            this.plainText = plainText = out.toString();
+        }
+
+        return plainText;
     }
 
     /**
      * @return if the rich text has a length of zero.
      */
     public boolean isEmpty() {
-        return getPlainText().isEmpty();
+        return this.root == null;
     }
 
     /**
      * @return the length of the plain text.
      */
     public int getLength() {
-        return segments.stream()
-                .map(segment -> segment.text.length())
-                .reduce(0, Integer::sum);
+        return SegmentTree.length(this.root);
     }
 
     /**
@@ -253,30 +251,39 @@ public class RichText implements FormattedText {
      * @return the selected sub-text.
      */
     public RichText subText(int start, int end) {
-        int current = 0;
-        List<Segment> subSegments = new ArrayList<>();
-        for (Segment segment : segments) {
-            int length = segment.text.length();
+        int length = this.getLength();
+        start = Math.clamp(start, 0, length);
+        end = Math.clamp(end, start, length);
 
-            // We're before the segment we're searching for
-            if (current + length <= start) {
-                current += length;
-                continue;
-            }
+        if (start == 0 && end == length) {
+            return this;
+        } else if (start == end) {
+            return EMPTY;
+        }
 
-            // We're after the segment, so we can stop
-            if (current >= end) {
-                break;
-            }
+        // Small ranges, like a single line, are cheaper to copy out of the index. We only
+        // do this if the index was already built, as building it takes linear time, and
+        // most texts are only sliced once before they're edited again.
+        SegmentIndex index = this.index;
+        int first = index == null ? 0 : index.indexAt(start);
+        int last = index == null ? 0 : index.indexAt(end - 1);
+        if (index != null && last - first < MAX_SLICED_SEGMENTS) {
+            List<Segment> segments = new ArrayList<>(last - first + 1);
+            for (int i = first; i <= last; i++) {
+                Segment segment = index.segments[i];
+                int segmentStart = index.starts[i];
 
-            int localStart = Math.max(0, start - current);
-            int localEnd = Math.min(length, end - current);
+                int localStart = Math.max(0, start - segmentStart);
+                int localEnd = Math.min(segment.text.length(), end - segmentStart);
+                segments.add(segment.withText(segment.text.substring(localStart, localEnd)));
+            }
 
-            subSegments.add(new Segment(segment.text.substring(localStart, localEnd), segment.color, segment.modifiers));
-            current += length;
+            return new RichText(SegmentTree.fromList(segments));
         }
 
-        return new RichText(subSegments);
+        SegmentTree.Split beforeEnd = SegmentTree.split(this.root, end);
+        SegmentTree.Split atStart = SegmentTree.split(beforeEnd.left(), start);
+        return new RichText(atStart.right());
     }
 
     /**
@@ -288,54 +295,24 @@ public class RichText implements FormattedText {
      * @return a RichText instance with the text in the specified area replaced.
      */
     public RichText replace(int start, int end, RichText replacement) {
-        int current = 0;
-        List<Segment> newSegments = new ArrayList<>();
-        boolean replacementAppended = false;
-        for (Segment segment : this.segments) {
-            int length = segment.text.length();
-
-            // We're before the segment we're replacing in
-            if (current + length <= start) {
-                newSegments.add(segment);
-                current += length;
-                continue;
-            }
+        int length = this.getLength();
+        start = Math.clamp(start, 0, length);
+        end = Math.clamp(end, start, length);
 
-            // We're after the segment we're replacing in
-            if (current >= end) {
-                newSegments.add(segment);
-                continue;
-            }
-
-            int localStart = Math.max(0, start - current);
-            int localEnd = Math.min(length, end - current);
-
-            // There's some text before our region
-            if (localStart > 0) {
-                newSegments.add(new Segment(segment.text.substring(0, localStart), segment.color, segment.modifiers));
-            }
+        SegmentTree.Split atStart = SegmentTree.split(this.root, start);
+        SegmentTree.Split atEnd = SegmentTree.split(atStart.right(), end - start);
 
-            if (!replacement.isEmpty() && !replacementAppended) {
-                newSegments.addAll(replacement.segments);
-                replacementAppended = true;
-            }
-
-            // There's some text after our region
-            if (localEnd < length) {
-                newSegments.add(new Segment(segment.text.substring(localEnd), segment.color, segment.modifiers));
-            }
-
-            current += length;
-        }
-
-        return new RichText(newSegments).mergeSimilarSegments();
+        // Concatenating merges similar segments at the seams, which are the only
+        // places where new neighbours can appear.
+        SegmentTree.Node replaced = SegmentTree.concat(atStart.left(), replacement.root);
+        return new RichText(SegmentTree.concat(replaced, atEnd.right()));
     }
 
     /**
      * Inserts a piece of text into the {@link RichText} at the specified text offset.
      *
      * <p>If the offset is beyond the end of the current text, the new segments are appended at the end.
-     * The method splits existing segments if necessary and merges similar styled segments afterwards.</p>
+     * The method splits existing segments if necessary and merges similar styled segments at the edges.</p>
      *
      * @param offset the position at which to insert the new segments (including formatting characters)
      * @param text   the rich text to insert
@@ -346,50 +323,12 @@ public class RichText implements FormattedText {
             return this;
         }
 
-        if (this.segments.isEmpty()) {
+        if (this.isEmpty()) {
             return text;
         }
 
-        List<Segment> combinedSegments = new ArrayList<>(segments);
-
-        int currentOffset = 0;
-        for (int i = 0; i < segments.size(); i++) {
-            Segment segment = segments.get(i);
-            int segmentLength = segment.text.length();
-
-            // Check if we should insert into/before this segment
-            if (offset > currentOffset + segmentLength) {
-                // We're before the segment we're searching for
-                currentOffset += segmentLength;
-                continue;
-            }
-
-            // former localOffset
-            int inSegmentOffset = offset - currentOffset;
-
-            // Merging segments in a specific order, to keep the indices correct.
-            // First: adding new segments
-            combinedSegments.remove(i);
-            combinedSegments.addAll(i, text.segments);
-
-            boolean shouldSplitSegment = offset < currentOffset + segmentLength;
-            if (shouldSplitSegment) {
-                // Second: add the end part of the split segment
-                Segment segmentEndPart = new Segment(segment.text.substring(inSegmentOffset), segment.color, segment.modifiers);
-                combinedSegments.add(i + text.segments.size(), segmentEndPart);
-            }
-
-            // Third: add the start part of the split segment
-            if (offset - currentOffset > 0) {
-                Segment segmentStartPart =
-                        new Segment(segment.text.substring(0, inSegmentOffset), segment.color, segment.modifiers);
-                combinedSegments.add(i, segmentStartPart);
-            }
-
-            break;
-        }
-
-        return new RichText(combinedSegments).mergeSimilarSegments();
+        int clamped = Math.clamp(offset, 0, this.getLength());
+        return this.replace(clamped, clamped, text);
     }
 
     /**
@@ -413,52 +352,63 @@ public class RichText implements FormattedText {
             return this;
         }
 
-        int current = 0;
-        List<Segment> newSegments = new ArrayList<>();
-        for (Segment segment : segments) {
-            int length = segment.text.length();
-
-            // We're before the segment we're modifying in
-            if (current + length <= start) {
-                newSegments.add(segment);
-                current += length;
-                continue;
-            }
+        int length = this.getLength();
+        start = Math.clamp(start, 0, length);
+        end = Math.clamp(end, start, length);
 
-            // We're after the segment we're modifying in
-            if (current >= end) {
-                newSegments.add(segment);
-                continue;
-            }
+        SegmentTree.Split atStart = SegmentTree.split(this.root, start);
+        SegmentTree.Split atEnd = SegmentTree.split(atStart.right(), end - start);
 
-            int localStart = Math.max(0, start - current);
-            int localEnd = Math.min(length, end - current);
+        int add = RichStyle.maskOf(addModifiers);
+        int remove = RichStyle.maskOf(removeModifiers);
 
-            // There's some text before our region
-            if (localStart > 0) {
-                newSegments.add(new Segment(segment.text.substring(0, localStart), segment.color, segment.modifiers));
+        // Only the segments inside the region need to be restyled, the rest of the tree is shared.
+        // Restyling can make neighbours equal, so we merge inside the region and at both seams.
+        List<Segment> newSegments = new ArrayList<>(SegmentTree.count(atEnd.left()));
+        SegmentTree.iterator(atEnd.left()).forEachRemaining((segment) -> {
+            // Let's calculate the final color and modifiers.
+            RichStyle style = segment.style.withModifiers(add, remove);
+            if (newColor != null) {
+                style = style.withColor(newColor);
             }
 
-            // The text we're modifying
-            String modifiedText = segment.text.substring(localStart, localEnd);
+            newSegments.add(new Segment(segment.text, style));
+        });
 
-            // Let's calculate the final color and modifiers.
-            ChatFormatting color = Optional.ofNullable(newColor).orElse(segment.color);
-            Set<ChatFormatting> modifiers = new HashSet<>(segment.modifiers);
-            modifiers.addAll(addModifiers);
-            modifiers.removeAll(removeModifiers);
+        SegmentTree.Node restyled = SegmentTree.concat(atStart.left(), SegmentTree.fromList(mergeSimilarSegments(newSegments)));
+        return new RichText(SegmentTree.concat(restyled, atEnd.right()));
+    }
 
-            newSegments.add(new Segment(modifiedText, color, modifiers));
+    /**
+     * Compute the edits that turn this text into another text. The edits contain the
+     * smallest amount of inserted and deleted characters, and restyle the kept text
+     * where its style changed.
+     *
+     * @param other the text to compare with.
+     * @return the list of edits, to be applied in order. This is empty if the texts are equal.
+     * @see #apply(List)
+     */
+    public List<RichTextEdit> diff(RichText other) {
+        if (this.equals(other)) {
+            return List.of();
+        }
 
-            // There's some text after our region
-            if (localEnd < length) {
-                newSegments.add(new Segment(segment.text.substring(localEnd), segment.color, segment.modifiers));
-            }
+        return RichTextDiff.diff(this, other);
+    }
 
-            current += length;
+    /**
+     * Apply a list of edits to this text, in order.
+     *
+     * @param edits the edits to apply, for example as returned by {@link #diff(RichText)}.
+     * @return the edited text.
+     */
+    public RichText apply(List<RichTextEdit> edits) {
+        RichText text = this;
+        for (RichTextEdit edit : edits) {
+            text = edit.applyTo(text);
         }
 
-        return new RichText(newSegments);
+        return text;
     }
 
     /**
@@ -468,41 +418,44 @@ public class RichText implements FormattedText {
      * @return the color-coded string.
      */
     public String getAsFormattedString() {
-        StringBuilder out = new StringBuilder();
+        String formattedString = this.formattedString;
+        if (formattedString == null) {
+            this.formattedString = formattedString = this.buildFormattedString();
+        }
+
+        return formattedString;
+    }
+
+    private String buildFormattedString() {
+        StringBuilder out = new StringBuilder(this.getLength());
 
         ChatFormatting currentColor = ChatFormatting.BLACK;
-        Set<ChatFormatting> currentModifiers = new HashSet<>();
+        int currentModifiers = 0;
 
-        for (Segment segment : segments) {
+        for (Iterator<Segment> iterator = SegmentTree.iterator(this.root); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
             if (segment.text.isEmpty()) {
                 continue;
             }
 
-            boolean colorChanged = !segment.color.equals(currentColor);
+            ChatFormatting color = segment.style.color();
+            int modifiers = segment.style.modifierMask();
 
-            Set<ChatFormatting> modifiersToRemove = new HashSet<>(currentModifiers);
-            modifiersToRemove.removeAll(segment.modifiers);
-            boolean shouldReapply = colorChanged || !modifiersToRemove.isEmpty();
-
-            List<ChatFormatting> modifiersToAdd = new ArrayList<>(segment.modifiers);
-            if (!shouldReapply) {
-                modifiersToAdd.removeAll(currentModifiers);
-            }
+            boolean colorChanged = color != currentColor;
+            boolean shouldReapply = colorChanged || (currentModifiers & ~modifiers) != 0;
 
-            if (colorChanged || shouldReapply) {
-                out.append(segment.color);
-            }
+            int modifiersToAdd = shouldReapply ? modifiers : modifiers & ~currentModifiers;
 
-            // Sort the modifiers so they're always in the same order, so the output is predictable.
-            modifiersToAdd.sort(Comparator.comparingInt(ChatFormatting::getChar));
-            for (ChatFormatting format : modifiersToAdd) {
-                out.append(format);
+            if (shouldReapply) {
+                out.append(color);
             }
 
+            // The modifiers are always appended in the same order, so the output is predictable.
+            RichStyle.appendModifierCodes(out, modifiersToAdd);
             out.append(segment.text);
 
-            currentColor = segment.color;
-            currentModifiers = segment.modifiers;
+            currentColor = color;
+            currentModifiers = modifiers;
         }
 
         return out.toString();
@@ -518,7 +471,13 @@ public class RichText implements FormattedText {
     public RichText filterCarriageReturns() {
         String plain = this.getPlainText();
         if (!plain.contains("\r")) return this;
-        return RichText.fromFormattedString(this.getAsFormattedString().replace("\r", ""));
+
+        RichTextBuilder builder = new RichTextBuilder();
+        for (Segment segment : this.getIndex().segments) {
+            builder.append(segment.text.replace("\r", ""), segment.style);
+        }
+
+        return builder.build();
     }
 
     /**
@@ -558,55 +517,59 @@ public class RichText implements FormattedText {
      * @return a pair with the common color and modifiers.
      */
     public Pair<@Nullable ChatFormatting, Set<ChatFormatting>> getCommonFormat(int start, int end) {
-        boolean first = true;
-        Set<ChatFormatting> modifiers = Set.of();
-        ChatFormatting color = ChatFormatting.BLACK;
+        // We walk the tree instead of the index, so this stays logarithmic for a text
+        // that was just edited and doesn't have an index yet.
+        SegmentTree.Node root = this.root;
+        int length = this.getLength();
 
-        int current = 0;
-        for (Segment segment : segments) {
-            int length = segment.text.length();
-
-            // If we have a zero-width selection, we want the formatting of
-            // the segment before it.
-            if (start == end && start <= current + length) {
-                return new Pair<>(segment.color, segment.modifiers);
+        // If we have a zero-width selection, we want the formatting of
+        // the segment before it.
+        if (start == end) {
+            if (root == null || start > length) {
+                return new Pair<>(ChatFormatting.BLACK, Set.of());
             }
 
-            // We're before the segment we're searching for
-            if (current + length <= start) {
-                current += length;
-                continue;
-            }
+            Segment segment = SegmentTree.segmentAt(root, Math.clamp(start - 1, 0, length - 1));
+            return new Pair<>(segment.color(), segment.modifiers());
+        }
 
-            // We're after the segment, so we can stop
-            if (current >= end) {
-                break;
-            }
+        if (root == null || start >= length || end <= 0) {
+            return new Pair<>(ChatFormatting.BLACK, Set.of());
+        }
 
-            // For the first segment, we initialize the values. Otherwise,
-            // we just adapt them to the current segment.
-            if (first) {
-                modifiers = new HashSet<>(segment.modifiers);
-                color = segment.color;
-                first = false;
-            } else {
-                modifiers.retainAll(segment.modifiers);
+        CommonFormat common = new CommonFormat();
+        SegmentTree.forEachInRange(root, Math.max(0, start), end, (segment, segmentStart) -> common.add(segment.style));
+        return new Pair<>(common.color, RichStyle.modifierSet(common.modifiers));
+    }
 
-                // Set the color to null if it's different.
-                if (color != segment.color) {
-                    color = null;
-                }
+    /**
+     * Collects the color and modifiers that a range of segments have in common.
+     */
+    private static final class CommonFormat {
+        private boolean first = true;
+        private @Nullable ChatFormatting color = null;
+        private int modifiers = 0;
+
+        private void add(RichStyle style) {
+            if (this.first) {
+                this.first = false;
+                this.color = style.color();
+                this.modifiers = style.modifierMask();
+                return;
             }
 
-            current += length;
-        }
+            this.modifiers &= style.modifierMask();
 
-        return new Pair<>(color, modifiers);
+            // Set the color to null if it's different.
+            if (this.color != style.color()) {
+                this.color = null;
+            }
+        }
     }
 
     @Override
     public <T> Optional<T> visit(ContentConsumer<T> consumer) {
-        for (Segment segment : segments) {
+        for (Segment segment : this.getIndex().segments) {
             Optional<T> out = consumer.accept(segment.text);
             if (out.isPresent()) {
                 return out;
@@ -618,11 +581,8 @@ public class RichText implements FormattedText {
 
     @Override
     public <T> Optional<T> visit(StyledContentConsumer<T> consumer, Style baseStyle) {
-        for (Segment segment : segments) {
-            Style style = baseStyle
-                    .applyFormats(segment.modifiers.toArray(new ChatFormatting[0]))
-                    .applyFormat(segment.color);
-            Optional<T> out = consumer.accept(style, segment.text);
+        for (Segment segment : this.getIndex().segments) {
+            Optional<T> out = consumer.accept(segment.style.toStyle(baseStyle), segment.text);
             if (out.isPresent()) {
                 return out;
             }
@@ -639,7 +599,7 @@ public class RichText implements FormattedText {
     @Override
     public String toString() {
         return "RichText{" +
-                "segments=" + segments +
+                "segments=" + SegmentTree.toList(this.root) +
                 '}';
     }
 
@@ -648,22 +608,78 @@ public class RichText implements FormattedText {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RichText richText = (RichText) o;
-        return Objects.equals(segments, richText.segments);
+        if (this.getLength() != richText.getLength() || SegmentTree.count(this.root) != SegmentTree.count(richText.root)) {
+            return false;
+        }
+
+        // If both hashes are already known, they're a cheap way to tell texts apart.
+        boolean hashesKnown = (this.hash != 0 || this.hashIsZero) && (richText.hash != 0 || richText.hashIsZero);
+        if (hashesKnown && this.hash != richText.hash) {
+            return false;
+        }
+
+        Iterator<Segment> ours = SegmentTree.iterator(this.root);
+        Iterator<Segment> theirs = SegmentTree.iterator(richText.root);
+        while (ours.hasNext()) {
+            if (!ours.next().equals(theirs.next())) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(segments);
+        int hash = this.hash;
+        if (hash == 0 && !this.hashIsZero) {
+            hash = 1;
+            for (Iterator<Segment> iterator = SegmentTree.iterator(this.root); iterator.hasNext(); ) {
+                hash = 31 * hash + iterator.next().hashCode();
+            }
+
+            if (hash == 0) {
+                this.hashIsZero = true;
+            } else {
+                this.hash = hash;
+            }
+        }
+
+        return hash;
     }
 
     /**
-     * A segment of rich text. This segment can only have a single color and set of
-     * modifiers.
+     * A segment of rich text. This segment can only have a single style.
      *
-     * @param text      the text that the segment represents.
-     * @param color     the color of the segment.
-     * @param modifiers the list of formatting modifiers for the segment.
+     * @param text  the text that the segment represents.
+     * @param style the interned style of the segment.
      */
-    public record Segment(String text, ChatFormatting color, Set<ChatFormatting> modifiers) {
+    public record Segment(String text, RichStyle style) {
+        public Segment(String text, ChatFormatting color, Set<ChatFormatting> modifiers) {
+            this(text, RichStyle.of(color, modifiers));
+        }
+
+        public ChatFormatting color() {
+            return this.style.color();
+        }
+
+        public Set<ChatFormatting> modifiers() {
+            return this.style.modifiers();
+        }
+
+        /**
+         * @return a segment with the same style, but different text.
+         */
+        public Segment withText(String text) {
+            return new Segment(text, this.style);
+        }
+
+        /**
+         * @return if both segments have the same color and modifiers.
+         */
+        public boolean hasSameStyle(Segment other) {
+            return this.style == other.style;
+        }
     }
+
 }
@@ -0,0 +1,116 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mutable builder for {@link RichText}. Where every operation on a RichText
+ * creates a new instance, a builder appends to its contents in place, and only
+ * creates a RichText once {@link #build()} is called. This makes it a good fit for
+ * code that assembles text in many small pieces.
+ * <br>
+ * Text appended with the same style as the text before it is added to the same
+ * segment, and empty text is skipped, so the segments of a builder are always
+ * canonical and can be turned into a RichText as they are.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public class RichTextBuilder {
+    private final List<Run> runs = new ArrayList<>();
+    private int length = 0;
+
+    /**
+     * Create a new, empty builder.
+     */
+    public RichTextBuilder() {
+    }
+
+    /**
+     * Create a new builder, starting out with the contents of the given text.
+     *
+     * @param text the text to start out with.
+     */
+    public RichTextBuilder(RichText text) {
+        this.append(text);
+    }
+
+    /**
+     * @return the length of the plain text in the builder.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    /**
+     * Append a piece of text with a single style to the end of the builder.
+     *
+     * @param text  the text to append.
+     * @param style the style of the text.
+     * @return this builder.
+     */
+    public RichTextBuilder append(String text, RichStyle style) {
+        if (text.isEmpty()) {
+            return this;
+        }
+
+        Run last = this.runs.isEmpty() ? null : this.runs.getLast();
+        if (last != null && last.style == style) {
+            last.text.append(text);
+        } else {
+            this.runs.add(new Run(new StringBuilder(text), style));
+        }
+
+        this.length += text.length();
+        return this;
+    }
+
+    /**
+     * Append a rich text to the end of the builder.
+     *
+     * @param text the text to append.
+     * @return this builder.
+     */
+    public RichTextBuilder append(RichText text) {
+        for (RichText.Segment segment : text.getIndex().segments) {
+            this.append(segment.text(), segment.style());
+        }
+
+        return this;
+    }
+
+    /**
+     * Freeze the contents of the builder into an immutable rich text. The builder
+     * can still be used afterward, without affecting the built text.
+     *
+     * @return the built rich text.
+     */
+    public RichText build() {
+        if (this.runs.isEmpty()) {
+            return RichText.EMPTY;
+        }
+
+        List<RichText.Segment> segments = new ArrayList<>(this.runs.size());
+        for (Run run : this.runs) {
+            segments.add(new RichText.Segment(run.text.toString(), run.style));
+        }
+
+        return new RichText(segments);
+    }
+
+    private static class Run {
+        private final StringBuilder text;
+        private final RichStyle style;
+
+        private Run(StringBuilder text, RichStyle style) {
+            this.text = text;
+            this.style = style;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the edits needed to turn one {@link RichText} into another.
+ * <br>
+ * The plain text is compared first: the common prefix and suffix are skipped, and
+ * the part in between is compared using Myers' O(ND) difference algorithm, giving
+ * the smallest set of inserted and deleted characters. Text that's kept is then
+ * compared segment by segment, to find the parts where only the style changed.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+final class RichTextDiff {
+    // Past this many inserted and deleted characters, finding the smallest diff gets
+    // expensive, so we replace the whole changed region instead.
+    private static final int MAX_EDIT_DISTANCE = 512;
+
+    private RichTextDiff() {
+    }
+
+    static List<RichTextEdit> diff(RichText from, RichText to) {
+        String a = from.getPlainText();
+        String b = to.getPlainText();
+
+        int prefix = 0;
+        int maxPrefix = Math.min(a.length(), b.length());
+        while (prefix < maxPrefix && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && a.charAt(a.length() - suffix - 1) == b.charAt(b.length() - suffix - 1)) {
+            suffix++;
+        }
+
+        Builder edits = new Builder(from.getIndex(), to);
+        edits.keep(prefix);
+
+        List<Run> runs = diffText(a.substring(prefix, a.length() - suffix), b.substring(prefix, b.length() - suffix));
+        for (Run run : runs) {
+            switch (run.type) {
+                case KEEP -> edits.keep(run.length);
+                case DELETE -> edits.delete(run.length);
+                case INSERT -> edits.insert(run.length);
+            }
+        }
+
+        edits.keep(suffix);
+        return edits.edits;
+    }
+
+    /**
+     * Find the shortest edit script between two strings, as a list of runs.
+     */
+    private static List<Run> diffText(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+
+        List<Run> runs = new ArrayList<>();
+        if (n == 0 || m == 0) {
+            addRun(runs, RunType.DELETE, n);
+            addRun(runs, RunType.INSERT, m);
+            return runs;
+        }
+
+        // trace.get(d) holds the furthest reaching x for every diagonal k in [-d, d],
+        // before the d-th step. We need these to walk back the path afterward.
+        List<int[]> trace = new ArrayList<>();
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+
+        for (int d = 0; d <= max; d++) {
+            int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                        ? v[offset + k + 1]
+                        : v[offset + k - 1] + 1;
+                int y = x - k;
+
+                while (x < n && y < m && a.charAt(x) == b.charAt(y)) {
+                    x++;
+                    y++;
+                }
+
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, n, m, d);
+                }
+            }
+        }
+
+        // The texts are too different to diff cheaply.
+        addRun(runs, RunType.DELETE, n);
+        addRun(runs, RunType.INSERT, m);
+        return runs;
+    }
+
+    private static List<Run> backtrack(List<int[]> trace, int n, int m, int distance) {
+        List<Run> reversed = new ArrayList<>();
+
+        int x = n;
+        int y = m;
+        for (int d = distance; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+
+            boolean down = k == -d || (k != d && v[d + k - 1] < v[d + k + 1]);
+            int previousK = down ? k + 1 : k - 1;
+            int previousX = v[d + previousK];
+            int previousY = previousX - previousK;
+
+            // Whatever comes after the step along the diagonal is kept.
+            addRun(reversed, RunType.KEEP, Math.min(x - previousX - (down ? 0 : 1), y - previousY - (down ? 1 : 0)));
+            addRun(reversed, down ? RunType.INSERT : RunType.DELETE, 1);
+
+            x = previousX;
+            y = previousY;
+        }
+
+        addRun(reversed, RunType.KEEP, x);
+
+        List<Run> runs = new ArrayList<>(reversed.size());
+        for (int i = reversed.size() - 1; i >= 0; i--) {
+            runs.add(reversed.get(i));
+        }
+
+        return runs;
+    }
+
+    private static void addRun(List<Run> runs, RunType type, int length) {
+        if (length <= 0) {
+            return;
+        }
+
+        Run last = runs.isEmpty() ? null : runs.getLast();
+        if (last != null && last.type == type) {
+            runs.set(runs.size() - 1, new Run(type, last.length + length));
+        } else {
+            runs.add(new Run(type, length));
+        }
+    }
+
+    private enum RunType {
+        KEEP, DELETE, INSERT
+    }
+
+    private record Run(RunType type, int length) {
+    }
+
+    /**
+     * Turns runs of kept, deleted and inserted text into edits, keeping track
+     * of the position in both texts and in the text being edited.
+     */
+    private static class Builder {
+        private final SegmentIndex from;
+        private final SegmentIndex toIndex;
+        private final RichText to;
+        private final List<RichTextEdit> edits = new ArrayList<>();
+
+        private int fromPos = 0;
+        private int toPos = 0;
+
+        private Builder(SegmentIndex from, RichText to) {
+            this.from = from;
+            this.toIndex = to.getIndex();
+            this.to = to;
+        }
+
+        private void keep(int length) {
+            // Walk both texts segment by segment, and restyle where the styles differ.
+            int end = this.toPos + length;
+            while (this.toPos < end) {
+                int fromSegment = this.from.indexAt(this.fromPos);
+                int toSegment = this.toIndex.indexAt(this.toPos);
+
+                int run = Math.min(end - this.toPos, Math.min(
+                        this.from.starts[fromSegment + 1] - this.fromPos,
+                        this.toIndex.starts[toSegment + 1] - this.toPos));
+
+                RichStyle style = this.toIndex.segments[toSegment].style();
+                if (this.from.segments[fromSegment].style() != style) {
+                    this.restyle(this.toPos, this.toPos + run, style);
+                }
+
+                this.fromPos += run;
+                this.toPos += run;
+            }
+        }
+
+        private void delete(int length) {
+            this.edits.add(new RichTextEdit.Delete(this.toPos, length));
+            this.fromPos += length;
+        }
+
+        private void insert(int length) {
+            this.edits.add(new RichTextEdit.Insert(this.toPos, this.to.subText(this.toPos, this.toPos + length)));
+            this.toPos += length;
+        }
+
+        private void restyle(int start, int end, RichStyle style) {
+            // Neighbouring restyles to the same style are merged into one.
+            if (!this.edits.isEmpty() && this.edits.getLast() instanceof RichTextEdit.Restyle last
+                    && last.end() == start && last.style() == style) {
+                this.edits.set(this.edits.size() - 1, new RichTextEdit.Restyle(last.start(), end, style));
+            } else {
+                this.edits.add(new RichTextEdit.Restyle(start, end, style));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * A single edit operation on a {@link RichText}, as produced by {@link RichText#diff(RichText)}.
+ * A list of edits is applied in order, so the offsets of every edit are relative to the
+ * text as it is after applying all edits before it.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public sealed interface RichTextEdit {
+    /**
+     * Apply this edit to a rich text.
+     *
+     * @param text the text to edit.
+     * @return the edited text.
+     */
+    RichText applyTo(RichText text);
+
+    /**
+     * Insert a piece of rich text.
+     *
+     * @param offset the offset to insert the text at.
+     * @param text   the text to insert, including its formatting.
+     */
+    record Insert(int offset, RichText text) implements RichTextEdit {
+        @Override
+        public RichText applyTo(RichText text) {
+            return text.insert(this.offset, this.text);
+        }
+    }
+
+    /**
+     * Delete a portion of the text.
+     *
+     * @param offset the start of the portion to delete.
+     * @param length the amount of characters to delete.
+     */
+    record Delete(int offset, int length) implements RichTextEdit {
+        @Override
+        public RichText applyTo(RichText text) {
+            return text.replace(this.offset, this.offset + this.length, RichText.EMPTY);
+        }
+    }
+
+    /**
+     * Change the style of a portion of the text, without changing the text itself.
+     *
+     * @param start the start of the portion (inclusive).
+     * @param end   the end of the portion (exclusive).
+     * @param style the new style of the portion.
+     */
+    record Restyle(int start, int end, RichStyle style) implements RichTextEdit {
+        @Override
+        public RichText applyTo(RichText text) {
+            RichText restyled = new RichText(text.subText(this.start, this.end).getPlainText(), this.style);
+            return text.replace(this.start, this.end, restyled);
+        }
+    }
+}
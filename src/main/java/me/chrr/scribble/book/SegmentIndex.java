@@ -0,0 +1,82 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A flattened, read-only view of the segments of a {@link RichText}, together
+ * with the text offset each segment starts at. Finding the segment at an offset
+ * is a binary search over these offsets, and iterating over a range of segments
+ * is a plain array walk.
+ * <br>
+ * This is built lazily by RichText the first time it's needed, and then kept for
+ * as long as the text lives. As the editor queries the same text for every line
+ * on every frame, this saves walking the tree over and over again.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+final class SegmentIndex {
+    static final SegmentIndex EMPTY = new SegmentIndex(new RichText.Segment[0], new int[]{0});
+
+    final RichText.Segment[] segments;
+
+    // starts[i] is the offset of the first character of segments[i]. There's
+    // one extra element at the end, which is equal to the length of the text.
+    final int[] starts;
+
+    private SegmentIndex(RichText.Segment[] segments, int[] starts) {
+        this.segments = segments;
+        this.starts = starts;
+    }
+
+    static SegmentIndex of(SegmentTree.Node root) {
+        RichText.Segment[] segments = new RichText.Segment[root.count];
+        int[] starts = new int[root.count + 1];
+
+        int i = 0;
+        int offset = 0;
+        for (Iterator<RichText.Segment> iterator = SegmentTree.iterator(root); iterator.hasNext(); ) {
+            RichText.Segment segment = iterator.next();
+            segments[i] = segment;
+            starts[i] = offset;
+
+            offset += segment.text().length();
+            i++;
+        }
+
+        starts[i] = offset;
+        return new SegmentIndex(segments, starts);
+    }
+
+    int size() {
+        return this.segments.length;
+    }
+
+    int length() {
+        return this.starts[this.segments.length];
+    }
+
+    /**
+     * Find the segment containing the character at an offset.
+     *
+     * @param offset the text offset. Offsets before the text map to the first segment,
+     *               offsets after the text map to the last segment.
+     * @return the index of the segment, or -1 if there are no segments.
+     */
+    int indexAt(int offset) {
+        if (this.segments.length == 0) {
+            return -1;
+        }
+
+        // Search for the last segment starting at or before the offset.
+        int index = Arrays.binarySearch(this.starts, 0, this.segments.length, offset);
+        if (index < 0) {
+            index = -index - 2;
+        }
+
+        return Math.clamp(index, 0, this.segments.length - 1);
+    }
+}
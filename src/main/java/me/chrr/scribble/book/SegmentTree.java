@@ -0,0 +1,318 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A persistent, height-balanced (AVL) binary tree of {@link RichText.Segment}s,
+ * ordered by their position in the text. Every node knows the amount of
+ * characters in its subtree, so we can find, split and join at any text offset
+ * in logarithmic time.
+ * <br>
+ * Nodes are never modified after they are created. Operations only create new
+ * nodes along the path they touch, so different versions of a text share most
+ * of their nodes with each other. An empty tree is represented by {@code null}.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+final class SegmentTree {
+    private SegmentTree() {
+    }
+
+    static int height(@Nullable Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    static int length(@Nullable Node node) {
+        return node == null ? 0 : node.length;
+    }
+
+    static int count(@Nullable Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Build a perfectly balanced tree from a list of segments in linear time.
+     *
+     * @param segments the segments, in order.
+     * @return the root of the new tree.
+     */
+    static @Nullable Node fromList(List<RichText.Segment> segments) {
+        return fromList(segments, 0, segments.size());
+    }
+
+    private static @Nullable Node fromList(List<RichText.Segment> segments, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+
+        int middle = (from + to) >>> 1;
+        return new Node(fromList(segments, from, middle), segments.get(middle), fromList(segments, middle + 1, to));
+    }
+
+    /**
+     * Join two trees with a segment in between them. Every segment in the left tree
+     * comes before the given segment, which comes before every segment in the right tree.
+     * This takes time proportional to the difference in height of both trees.
+     */
+    static Node join(@Nullable Node left, RichText.Segment segment, @Nullable Node right) {
+        if (height(left) > height(right) + 1) {
+            // The left tree is taller, so we descend along its right spine.
+            assert left != null;
+            return rebalance(left.left, left.segment, join(left.right, segment, right));
+        } else if (height(right) > height(left) + 1) {
+            assert right != null;
+            return rebalance(join(left, segment, right.left), right.segment, right.right);
+        } else {
+            return new Node(left, segment, right);
+        }
+    }
+
+    /**
+     * Concatenate two trees. If the last segment of the left tree and the first segment
+     * of the right tree share the same style, they are merged into a single segment.
+     */
+    static @Nullable Node concat(@Nullable Node left, @Nullable Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        }
+
+        RichText.Segment last = last(left);
+        RichText.Segment first = first(right);
+
+        if (last.hasSameStyle(first)) {
+            RichText.Segment merged = last.withText(last.text() + first.text());
+            return join(removeLast(left), merged, removeFirst(right));
+        } else {
+            return join(removeLast(left), last, right);
+        }
+    }
+
+    /**
+     * Split a tree in two at a text offset. If the offset is in the middle of a
+     * segment, that segment is split into two segments with the same style.
+     *
+     * @param node   the tree to split.
+     * @param offset the text offset to split at.
+     * @return the tree before the offset and the tree after it.
+     */
+    static Split split(@Nullable Node node, int offset) {
+        if (node == null) {
+            return new Split(null, null);
+        }
+
+        int leftLength = length(node.left);
+        int segmentLength = node.segment.text().length();
+
+        if (offset < leftLength) {
+            Split split = split(node.left, offset);
+            return new Split(split.left(), join(split.right(), node.segment, node.right));
+        } else if (offset == leftLength) {
+            return new Split(node.left, join(null, node.segment, node.right));
+        } else if (offset < leftLength + segmentLength) {
+            int localOffset = offset - leftLength;
+
+            RichText.Segment before = node.segment.withText(node.segment.text().substring(0, localOffset));
+            RichText.Segment after = node.segment.withText(node.segment.text().substring(localOffset));
+            return new Split(join(node.left, before, null), join(null, after, node.right));
+        } else if (offset == leftLength + segmentLength) {
+            return new Split(join(node.left, node.segment, null), node.right);
+        } else {
+            Split split = split(node.right, offset - leftLength - segmentLength);
+            return new Split(join(node.left, node.segment, split.left()), split.right());
+        }
+    }
+
+    static RichText.Segment first(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+
+        return node.segment;
+    }
+
+    static RichText.Segment last(Node node) {
+        while (node.right != null) {
+            node = node.right;
+        }
+
+        return node.segment;
+    }
+
+    /**
+     * Find the segment containing the character at the given offset.
+     *
+     * @param node   the tree to search in.
+     * @param offset the text offset, which has to be within the text.
+     * @return the segment containing the character.
+     */
+    static RichText.Segment segmentAt(Node node, int offset) {
+        while (true) {
+            int leftLength = length(node.left);
+            if (offset < leftLength) {
+                node = node.left;
+            } else if (offset < leftLength + node.segment.text().length()) {
+                return node.segment;
+            } else {
+                offset -= leftLength + node.segment.text().length();
+                node = node.right;
+            }
+
+            if (node == null) {
+                throw new IndexOutOfBoundsException("offset outside of text");
+            }
+        }
+    }
+
+    /**
+     * Visit every segment that overlaps with the given text range, in order. Subtrees
+     * completely outside the range are skipped, so this only takes time proportional
+     * to the amount of segments visited and the height of the tree.
+     */
+    static void forEachInRange(@Nullable Node node, int start, int end, SegmentVisitor visitor) {
+        forEachInRange(node, 0, start, end, visitor);
+    }
+
+    private static void forEachInRange(@Nullable Node node, int nodeStart, int start, int end, SegmentVisitor visitor) {
+        if (node == null || start >= nodeStart + node.length || end <= nodeStart) {
+            return;
+        }
+
+        forEachInRange(node.left, nodeStart, start, end, visitor);
+
+        int segmentStart = nodeStart + length(node.left);
+        int segmentEnd = segmentStart + node.segment.text().length();
+        if (segmentStart < end && segmentEnd > start) {
+            visitor.visit(node.segment, segmentStart);
+        }
+
+        forEachInRange(node.right, segmentEnd, start, end, visitor);
+    }
+
+    static List<RichText.Segment> toList(@Nullable Node node) {
+        List<RichText.Segment> segments = new ArrayList<>(count(node));
+        iterator(node).forEachRemaining(segments::add);
+        return segments;
+    }
+
+    /**
+     * @return an in-order iterator over all segments of the tree.
+     */
+    static Iterator<RichText.Segment> iterator(@Nullable Node node) {
+        return new Iterator<>() {
+            private final Deque<Node> stack = new ArrayDeque<>();
+
+            {
+                pushLeftSpine(node);
+            }
+
+            private void pushLeftSpine(@Nullable Node node) {
+                while (node != null) {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public RichText.Segment next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                Node next = stack.pop();
+                pushLeftSpine(next.right);
+                return next.segment;
+            }
+        };
+    }
+
+    private static @Nullable Node removeFirst(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+
+        return join(removeFirst(node.left), node.segment, node.right);
+    }
+
+    private static @Nullable Node removeLast(Node node) {
+        if (node.right == null) {
+            return node.left;
+        }
+
+        return join(node.left, node.segment, removeLast(node.right));
+    }
+
+    /**
+     * Create a node from two subtrees whose heights differ by at most two,
+     * rotating once or twice to restore the balance if needed.
+     */
+    private static Node rebalance(@Nullable Node left, RichText.Segment segment, @Nullable Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+
+        if (leftHeight > rightHeight + 1) {
+            assert left != null;
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.left, left.segment, new Node(left.right, segment, right));
+            } else {
+                Node pivot = left.right;
+                assert pivot != null;
+                return new Node(new Node(left.left, left.segment, pivot.left), pivot.segment, new Node(pivot.right, segment, right));
+            }
+        } else if (rightHeight > leftHeight + 1) {
+            assert right != null;
+            if (height(right.right) >= height(right.left)) {
+                return new Node(new Node(left, segment, right.left), right.segment, right.right);
+            } else {
+                Node pivot = right.left;
+                assert pivot != null;
+                return new Node(new Node(left, segment, pivot.left), pivot.segment, new Node(pivot.right, right.segment, right.right));
+            }
+        } else {
+            return new Node(left, segment, right);
+        }
+    }
+
+    static final class Node {
+        final @Nullable Node left;
+        final RichText.Segment segment;
+        final @Nullable Node right;
+
+        final int height;
+        final int length;
+        final int count;
+
+        private Node(@Nullable Node left, RichText.Segment segment, @Nullable Node right) {
+            this.left = left;
+            this.segment = segment;
+            this.right = right;
+
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.length = length(left) + segment.text().length() + length(right);
+            this.count = count(left) + 1 + count(right);
+        }
+    }
+
+    record Split(@Nullable Node left, @Nullable Node right) {
+    }
+
+    @FunctionalInterface
+    interface SegmentVisitor {
+        void visit(RichText.Segment segment, int segmentStart);
+    }
+}
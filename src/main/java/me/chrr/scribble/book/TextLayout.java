@@ -0,0 +1,602 @@
+package me.chrr.scribble.book;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The result of wrapping a {@link RichText} into lines of a maximum width. Lines
+ * are broken following the same rules as vanilla's {@code StringSplitter}:
+ * <ul>
+ *     <li>a newline always ends the line, and is not part of either line;</li>
+ *     <li>a line that gets too wide is broken after its last space, which is
+ *     left out, or before the character that made it too wide if there is no space;</li>
+ *     <li>every line has at least one visible character before it can be broken;</li>
+ *     <li>if the text ends with a newline, there's an empty line at the end.</li>
+ * </ul>
+ * A layout is immutable. When the text changes, {@link #relayout(RichText)} only
+ * re-wraps the lines around the change, until the line breaks line up with the
+ * previous layout again. Every line is wrapped independently of the lines before it,
+ * so from that point on, the old lines can be reused as-is. To know which lines
+ * before the change need to be re-wrapped, we remember up to which character each
+ * line had to look to decide where to break.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class TextLayout {
+    private final RichText text;
+    private final int maxWidth;
+    private final AdvanceProvider advances;
+    private final boolean complete;
+
+    private final int lineCount;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] scanEnds;
+    private final float[] widths;
+
+    private TextLayout(RichText text, int maxWidth, AdvanceProvider advances, boolean complete, Lines lines) {
+        this(text, maxWidth, advances, complete, lines.count, lines.starts, lines.ends, lines.scanEnds, lines.widths);
+    }
+
+    private TextLayout(RichText text, int maxWidth, AdvanceProvider advances, boolean complete,
+                       int lineCount, int[] starts, int[] ends, int[] scanEnds, float[] widths) {
+        this.text = text;
+        this.maxWidth = maxWidth;
+        this.advances = advances;
+        this.complete = complete;
+        this.lineCount = lineCount;
+        this.starts = starts;
+        this.ends = ends;
+        this.scanEnds = scanEnds;
+        this.widths = widths;
+    }
+
+    /**
+     * Wrap a text into lines.
+     *
+     * @param text     the text to wrap.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param advances the advance provider used to measure characters.
+     * @return the layout of the text.
+     */
+    public static TextLayout of(RichText text, int maxWidth, AdvanceProvider advances) {
+        Lines lines = new Lines(16);
+        new LineBreaker(text, maxWidth, advances).breakLines(0, Integer.MAX_VALUE, lines, null, 0, 0);
+        return new TextLayout(text, maxWidth, advances, true, lines);
+    }
+
+    /**
+     * Wrap only part of a text into lines, starting at a given offset and stopping
+     * after a maximum amount of lines. As every line is wrapped independently of the
+     * lines before it, this gives the same lines as wrapping the whole text would, as
+     * long as {@code from} is the start of a line.
+     *
+     * @param text     the text to wrap.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param advances the advance provider used to measure characters.
+     * @param from     the offset to start wrapping at.
+     * @param maxLines the maximum amount of lines to wrap.
+     * @return the (partial) layout of the text.
+     * @see #isComplete()
+     */
+    public static TextLayout of(RichText text, int maxWidth, AdvanceProvider advances, int from, int maxLines) {
+        Lines lines = new Lines(Math.min(maxLines, 16));
+        boolean complete = new LineBreaker(text, maxWidth, advances).breakLines(from, maxLines, lines, null, 0, 0);
+        return new TextLayout(text, maxWidth, advances, from == 0 && complete, lines);
+    }
+
+    /**
+     * Count the lines of a text, but stop as soon as there are more than {@code limit}.
+     * This is much cheaper than a full layout when the text is way too long to fit.
+     *
+     * @param text     the text to wrap.
+     * @param maxWidth the maximum width of a line, in pixels.
+     * @param advances the advance provider used to measure characters.
+     * @param limit    the maximum amount of lines we're interested in.
+     * @return the amount of lines, or {@code limit + 1} if there are more than {@code limit}.
+     */
+    public static int countLines(RichText text, int maxWidth, AdvanceProvider advances, int limit) {
+        return TextLayout.of(text, maxWidth, advances, 0, limit + 1).getLineCount();
+    }
+
+    /**
+     * Wrap a new version of the text, reusing the lines of this layout that aren't
+     * affected by the changes between the two versions.
+     *
+     * @param text the new version of the text.
+     * @return the layout of the new text.
+     */
+    public TextLayout relayout(RichText text) {
+        if (text == this.text) {
+            return this;
+        } else if (!this.complete) {
+            return TextLayout.of(text, this.maxWidth, this.advances);
+        }
+
+        // Find the region that changed, by skipping the common prefix and suffix.
+        String oldPlain = this.text.getPlainText();
+        String newPlain = text.getPlainText();
+        int start = commonPrefix(this.text, text);
+        int suffix = commonSuffix(this.text, text, Math.min(oldPlain.length(), newPlain.length()) - start);
+        if (start == oldPlain.length() && start == newPlain.length()) {
+            return new TextLayout(text, this.maxWidth, this.advances, true,
+                    this.lineCount, this.starts, this.ends, this.scanEnds, this.widths);
+        }
+
+        int oldEnd = oldPlain.length() - suffix;
+        int newEnd = newPlain.length() - suffix;
+
+        // A change can also affect lines before the one containing it, if they looked
+        // ahead that far to decide where to break. Usually, that's just the line before.
+        int restart = this.lineAt(start);
+        while (restart > 0 && this.scanEnds[restart - 1] >= start) {
+            restart--;
+        }
+
+        int from = restart < this.lineCount ? this.starts[restart] : 0;
+
+        Lines lines = new Lines(this.lineCount + 4);
+        lines.copyFrom(this, 0, restart, 0);
+        new LineBreaker(text, this.maxWidth, this.advances).breakLines(from, Integer.MAX_VALUE, lines, this, newEnd, newEnd - oldEnd);
+        return new TextLayout(text, this.maxWidth, this.advances, true, lines);
+    }
+
+    public RichText getText() {
+        return this.text;
+    }
+
+    public int getMaxWidth() {
+        return this.maxWidth;
+    }
+
+    public AdvanceProvider getAdvances() {
+        return this.advances;
+    }
+
+    /**
+     * @return whether this layout contains all lines of the text. This is only false for
+     * layouts made with {@link #of(RichText, int, AdvanceProvider, int, int)}, which can
+     * start somewhere in the middle of the text or stop before its end.
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * @return the amount of lines. Note that an empty text has no lines at all.
+     */
+    public int getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * @return the offset of the first character of a line.
+     */
+    public int getLineStart(int line) {
+        return this.starts[line];
+    }
+
+    /**
+     * @return the offset after the last character of a line. If the line was broken on a
+     * space or newline, that character isn't part of the line, and comes after this offset.
+     */
+    public int getLineEnd(int line) {
+        return this.ends[line];
+    }
+
+    /**
+     * @return the offset of the last character we had to look at to decide where to break a line.
+     */
+    int getScanEnd(int line) {
+        return this.scanEnds[line];
+    }
+
+    /**
+     * @return the width of a line in pixels, rounded up like {@code Font.width} does.
+     */
+    public int getLineWidth(int line) {
+        return (int) Math.ceil(this.widths[line]);
+    }
+
+    /**
+     * Measure the width of a range of the text, like {@code Font.width} would measure
+     * the sub-text. Whole lines are looked up instead of measured again.
+     *
+     * @param start start of the range (inclusive).
+     * @param end   end of the range (exclusive).
+     * @return the width of the range in pixels, rounded up.
+     */
+    public int getWidth(int start, int end) {
+        int line = this.lineAt(start);
+        if (line < this.lineCount && this.starts[line] == start && this.ends[line] == end) {
+            return this.getLineWidth(line);
+        }
+
+        String plain = this.text.getPlainText();
+        SegmentIndex index = this.text.getIndex();
+        end = Math.min(end, plain.length());
+        if (start >= end) {
+            return 0;
+        }
+
+        int segment = index.indexAt(start);
+        float width = 0f;
+        for (int i = start; i < end; ) {
+            while (i >= index.starts[segment + 1]) {
+                segment++;
+            }
+
+            int segmentEnd = Math.min(end, index.starts[segment + 1]);
+            char c = plain.charAt(i);
+            if (c == '§') {
+                i += i + 1 < segmentEnd ? 2 : 1;
+                continue;
+            }
+
+            int codePoint = codePointAt(plain, i, segmentEnd);
+            width += this.advances.getAdvance(codePoint, index.segments[segment].style());
+            i += Character.charCount(codePoint);
+        }
+
+        return (int) Math.ceil(width);
+    }
+
+    /**
+     * Measure the x-offset of every position in a line, relative to the line start. This
+     * is the same as calling {@link #getWidth(int, int)} from the line start to every
+     * position, but in a single pass.
+     *
+     * @param line the line to measure.
+     * @return the offsets in pixels, rounded up, indexed by position minus the line start.
+     * The last entry is the width of the whole line.
+     */
+    public int[] getLineOffsets(int line) {
+        String plain = this.text.getPlainText();
+        SegmentIndex index = this.text.getIndex();
+        int start = this.starts[line];
+        int end = this.ends[line];
+
+        int[] offsets = new int[end - start + 1];
+        if (start >= end) {
+            return offsets;
+        }
+
+        int segment = index.indexAt(start);
+        float width = 0f;
+        for (int i = start; i < end; ) {
+            while (i >= index.starts[segment + 1]) {
+                segment++;
+            }
+
+            int segmentEnd = Math.min(end, index.starts[segment + 1]);
+            int next;
+            if (plain.charAt(i) == '§') {
+                next = i + (i + 1 < segmentEnd ? 2 : 1);
+            } else {
+                int codePoint = codePointAt(plain, i, segmentEnd);
+                width += this.advances.getAdvance(codePoint, index.segments[segment].style());
+                next = i + Character.charCount(codePoint);
+            }
+
+            for (int j = i + 1; j <= next; j++) {
+                offsets[j - start] = j == next ? (int) Math.ceil(width) : offsets[i - start];
+            }
+
+            i = next;
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Find how many characters of a range of the text fit in a width, like
+     * {@code Font.substrByWidth} would for the sub-text.
+     *
+     * @param start start of the range (inclusive).
+     * @param end   end of the range (exclusive).
+     * @param width the available width, in pixels.
+     * @return the offset after the last character that fits.
+     */
+    public int getOffsetAtX(int start, int end, float width) {
+        String plain = this.text.getPlainText();
+        SegmentIndex index = this.text.getIndex();
+        end = Math.min(end, plain.length());
+        if (start >= end) {
+            return start;
+        }
+
+        int segment = index.indexAt(start);
+        int offset = start;
+        for (int i = start; i < end; ) {
+            while (i >= index.starts[segment + 1]) {
+                segment++;
+            }
+
+            int segmentEnd = Math.min(end, index.starts[segment + 1]);
+            if (plain.charAt(i) == '§') {
+                i += i + 1 < segmentEnd ? 2 : 1;
+                continue;
+            }
+
+            int codePoint = codePointAt(plain, i, segmentEnd);
+            width -= this.advances.getAdvance(codePoint, index.segments[segment].style());
+            if (width < 0f) {
+                break;
+            }
+
+            i += Character.charCount(codePoint);
+            offset = i;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Find the line containing a text offset.
+     *
+     * @param offset the text offset.
+     * @return the last line that starts at or before the offset, or zero if there are no lines.
+     */
+    public int lineAt(int offset) {
+        int line = Arrays.binarySearch(this.starts, 0, this.lineCount, offset);
+        if (line < 0) {
+            line = -line - 2;
+        }
+
+        return Math.max(0, line);
+    }
+
+    /**
+     * Get the character at an offset, like vanilla's {@code StringDecomposer} would: surrogate
+     * pairs are combined if they're within the same segment, and lone surrogates are replaced.
+     */
+    private static int codePointAt(String plain, int offset, int segmentEnd) {
+        char c = plain.charAt(offset);
+        if (Character.isHighSurrogate(c) && offset + 1 < segmentEnd && Character.isLowSurrogate(plain.charAt(offset + 1))) {
+            return Character.toCodePoint(c, plain.charAt(offset + 1));
+        } else if (Character.isSurrogate(c)) {
+            return 0xfffd;
+        } else {
+            return c;
+        }
+    }
+
+    private static int commonPrefix(RichText a, RichText b) {
+        String plainA = a.getPlainText();
+        String plainB = b.getPlainText();
+        SegmentIndex indexA = a.getIndex();
+        SegmentIndex indexB = b.getIndex();
+
+        int max = Math.min(plainA.length(), plainB.length());
+        int segmentA = 0;
+        int segmentB = 0;
+
+        int prefix = 0;
+        while (prefix < max) {
+            while (indexA.starts[segmentA + 1] <= prefix) segmentA++;
+            while (indexB.starts[segmentB + 1] <= prefix) segmentB++;
+
+            if (plainA.charAt(prefix) != plainB.charAt(prefix)
+                    || indexA.segments[segmentA].style() != indexB.segments[segmentB].style()) {
+                break;
+            }
+
+            prefix++;
+        }
+
+        return prefix;
+    }
+
+    private static int commonSuffix(RichText a, RichText b, int max) {
+        String plainA = a.getPlainText();
+        String plainB = b.getPlainText();
+        SegmentIndex indexA = a.getIndex();
+        SegmentIndex indexB = b.getIndex();
+
+        int segmentA = indexA.size() - 1;
+        int segmentB = indexB.size() - 1;
+
+        int suffix = 0;
+        while (suffix < max) {
+            int offsetA = plainA.length() - suffix - 1;
+            int offsetB = plainB.length() - suffix - 1;
+            while (indexA.starts[segmentA] > offsetA) segmentA--;
+            while (indexB.starts[segmentB] > offsetB) segmentB--;
+
+            if (plainA.charAt(offsetA) != plainB.charAt(offsetB)
+                    || indexA.segments[segmentA].style() != indexB.segments[segmentB].style()) {
+                break;
+            }
+
+            suffix++;
+        }
+
+        return suffix;
+    }
+
+    /**
+     * Wraps a text into lines, one line at a time.
+     */
+    private static class LineBreaker {
+        private final String plain;
+        private final SegmentIndex index;
+        private final int maxWidth;
+        private final AdvanceProvider advances;
+
+        private LineBreaker(RichText text, int maxWidth, AdvanceProvider advances) {
+            this.plain = text.getPlainText();
+            this.index = text.getIndex();
+            this.maxWidth = maxWidth;
+            this.advances = advances;
+        }
+
+        /**
+         * Wrap the text starting at a line start, until the end of the text or until there
+         * are {@code maxLines} lines. If an old layout is given, we stop as soon as a line
+         * starts at or after {@code syncFrom} where a line of the old layout started too,
+         * and copy the rest from there.
+         *
+         * @return whether all lines up to the end of the text were added.
+         */
+        private boolean breakLines(int pos, int maxLines, Lines out, @Nullable TextLayout old, int syncFrom, int delta) {
+            int length = this.plain.length();
+
+            // If we start at the end of the text, right after a newline, we still need the
+            // empty line after it. Otherwise, this gets set by every line we wrap.
+            boolean endedWithNewline = pos > 0 && pos == length && this.plain.charAt(pos - 1) == '\n';
+
+            while (pos < length) {
+                if (out.count >= maxLines) {
+                    return false;
+                }
+
+                int segment = this.index.indexAt(pos);
+                int segmentEnd = this.index.starts[segment + 1];
+                RichStyle style = this.index.segments[segment].style();
+
+                float width = 0f;
+                float widthBeforeSpace = 0f;
+                int lastSpace = -1;
+                boolean hadNonZeroWidthChar = false;
+
+                int end = length;
+                int next = length;
+                int scanEnd = length;
+                float lineWidth = -1f;
+                endedWithNewline = false;
+
+                for (int i = pos; i < length; ) {
+                    while (i >= segmentEnd) {
+                        segment++;
+                        segmentEnd = this.index.starts[segment + 1];
+                        style = this.index.segments[segment].style();
+                    }
+
+                    char c = this.plain.charAt(i);
+                    if (c == '\n') {
+                        end = i;
+                        next = i + 1;
+                        scanEnd = i;
+                        lineWidth = width;
+                        endedWithNewline = true;
+                        break;
+                    } else if (c == '§') {
+                        // Like vanilla, formatting codes in the text itself are skipped. We
+                        // don't apply them, as our own text never contains valid ones.
+                        i += i + 1 < segmentEnd ? 2 : 1;
+                        continue;
+                    }
+
+                    int codePoint = codePointAt(this.plain, i, segmentEnd);
+                    int charCount = Character.charCount(codePoint);
+
+                    if (c == ' ') {
+                        lastSpace = i;
+                        widthBeforeSpace = width;
+                    }
+
+                    float advance = this.advances.getAdvance(codePoint, style);
+                    float widthBefore = width;
+                    width += advance;
+
+                    if (hadNonZeroWidthChar && width > this.maxWidth) {
+                        scanEnd = i + charCount - 1;
+                        if (lastSpace != -1) {
+                            end = lastSpace;
+                            next = lastSpace + 1;
+                            lineWidth = widthBeforeSpace;
+                        } else {
+                            end = i;
+                            next = i;
+                            lineWidth = widthBefore;
+                        }
+
+                        break;
+                    }
+
+                    hadNonZeroWidthChar |= advance != 0f;
+                    i += charCount;
+                }
+
+                if (lineWidth < 0f) {
+                    lineWidth = width;
+                }
+
+                out.add(pos, end, scanEnd, lineWidth);
+                pos = next;
+
+                // From here on, the text is the same as in the old layout. If a line of the old
+                // layout starts at the same place, all lines after it will be the same too.
+                if (old != null && pos >= syncFrom && pos < length) {
+                    int oldLine = Arrays.binarySearch(old.starts, 0, old.lineCount, pos - delta);
+                    if (oldLine >= 0) {
+                        out.copyFrom(old, oldLine, old.lineCount, delta);
+                        return true;
+                    }
+                }
+            }
+
+            if (endedWithNewline) {
+                if (out.count >= maxLines) {
+                    return false;
+                }
+
+                out.add(length, length, length, 0f);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Growable arrays of line starts, ends, scan ends and widths.
+     */
+    private static class Lines {
+        private int count = 0;
+        private int[] starts;
+        private int[] ends;
+        private int[] scanEnds;
+        private float[] widths;
+
+        private Lines(int capacity) {
+            capacity = Math.max(capacity, 1);
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.scanEnds = new int[capacity];
+            this.widths = new float[capacity];
+        }
+
+        private void add(int start, int end, int scanEnd, float width) {
+            this.ensureCapacity(this.count + 1);
+            this.starts[this.count] = start;
+            this.ends[this.count] = end;
+            this.scanEnds[this.count] = scanEnd;
+            this.widths[this.count] = width;
+            this.count++;
+        }
+
+        private void copyFrom(TextLayout layout, int from, int to, int delta) {
+            this.ensureCapacity(this.count + to - from);
+            for (int line = from; line < to; line++) {
+                this.starts[this.count] = layout.starts[line] + delta;
+                this.ends[this.count] = layout.ends[line] + delta;
+                this.scanEnds[this.count] = layout.scanEnds[line] + delta;
+                this.widths[this.count] = layout.widths[line];
+                this.count++;
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > this.starts.length) {
+                int newCapacity = Math.max(capacity, this.starts.length * 2);
+                this.starts = Arrays.copyOf(this.starts, newCapacity);
+                this.ends = Arrays.copyOf(this.ends, newCapacity);
+                this.scanEnds = Arrays.copyOf(this.scanEnds, newCapacity);
+                this.widths = Arrays.copyOf(this.widths, newCapacity);
+            }
+        }
+    }
+}
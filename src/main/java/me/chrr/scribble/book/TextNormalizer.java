@@ -0,0 +1,112 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Turns text coming in from the keyboard or clipboard into {@link RichText}. In a
+ * single pass over the input, this:
+ * <ul>
+ *     <li>drops carriage returns, which books would show as visible symbols;</li>
+ *     <li>drops RESET formatting codes, as they act weirdly in books;</li>
+ *     <li>optionally strips all other formatting codes;</li>
+ *     <li>and parses the remaining formatting codes.</li>
+ * </ul>
+ * If the input contains no formatting codes, it's inserted in the style the user is
+ * currently typing in. Otherwise, the formatting codes decide the style, starting from
+ * the default style, the same way {@link RichText#fromFormattedString(String)} does.
+ *
+ * @author chrrrs
+ */
+@NullMarked
+public final class TextNormalizer {
+    private TextNormalizer() {
+    }
+
+    /**
+     * Normalize and parse a piece of incoming text.
+     *
+     * @param input          the raw text, possibly containing formatting codes.
+     * @param typingStyle    the style to use if the text doesn't contain formatting codes.
+     * @param keepFormatting whether to keep formatting codes, or to strip them.
+     * @return the rich text to insert.
+     */
+    public static RichText normalize(String input, RichStyle typingStyle, boolean keepFormatting) {
+        // Most input, like single typed characters, has nothing to normalize.
+        if (input.indexOf('§') < 0 && input.indexOf('\r') < 0) {
+            return input.isEmpty() ? RichText.EMPTY : new RichText(input, typingStyle);
+        }
+
+        return parse(input, typingStyle, keepFormatting, false);
+    }
+
+    private static RichText parse(String input, RichStyle typingStyle, boolean keepFormatting, boolean hasCodes) {
+        RichTextBuilder builder = new RichTextBuilder();
+        StringBuilder text = new StringBuilder(input.length());
+        RichStyle style = RichStyle.DEFAULT;
+
+        // Until we find a formatting code, we don't know yet if invalid codes should be
+        // kept as literal text (no codes), or dropped together with the character after
+        // them (like the parser does).
+        boolean foundCode = hasCodes;
+        boolean foundInvalidCode = false;
+
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '\r') {
+                continue;
+            } else if (c != '§') {
+                text.append(c);
+                continue;
+            }
+
+            int codeIndex = nextNonCarriageReturn(input, i + 1);
+            ChatFormatting formatting = codeIndex < input.length()
+                    ? ChatFormatting.getByCode(input.charAt(codeIndex))
+                    : null;
+
+            if (formatting == null) {
+                if (foundCode) {
+                    i = codeIndex;
+                } else {
+                    foundInvalidCode = true;
+                    text.append(c);
+                }
+
+                continue;
+            }
+
+            i = codeIndex;
+            if (formatting == ChatFormatting.RESET || !keepFormatting) {
+                continue;
+            }
+
+            // In the rare case that we already kept invalid codes as literal text, we
+            // have to start over, now knowing that the text contains formatting codes.
+            if (!foundCode && foundInvalidCode) {
+                return parse(input, typingStyle, true, true);
+            }
+
+            foundCode = true;
+            builder.append(text.toString(), style);
+            text.setLength(0);
+
+            if (formatting.isFormat()) {
+                style = style.withModifiers(RichStyle.maskOf(formatting), 0);
+            } else {
+                style = RichStyle.of(formatting, 0);
+            }
+        }
+
+        builder.append(text.toString(), foundCode ? style : typingStyle);
+        return builder.build();
+    }
+
+    private static int nextNonCarriageReturn(String input, int index) {
+        while (index < input.length() && input.charAt(index) == '\r') {
+            index++;
+        }
+
+        return index;
+    }
+}
@@ -1,10 +1,12 @@
 package me.chrr.scribble.book;
 
 import me.chrr.scribble.history.HistoryListener;
+import me.chrr.scribble.history.command.Command;
 import me.chrr.scribble.history.command.OverflowCommand;
+import me.chrr.scribble.history.command.ReflowCommand;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.gui.Font;
-import net.minecraft.network.chat.Style;
+import net.minecraft.network.chat.Component;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -20,9 +22,9 @@ public class TextOverflowHandler {
     
     private final HistoryListener listener;
     private final Font font;
-    private final Consumer<OverflowCommand> onCommand;
+    private final Consumer<Command> onCommand;
 
-    public TextOverflowHandler(HistoryListener listener, Font font, Consumer<OverflowCommand> onCommand) {
+    public TextOverflowHandler(HistoryListener listener, Font font, Consumer<Command> onCommand) {
         this.listener = listener;
         this.font = font;
         this.onCommand = onCommand;
@@ -32,58 +34,83 @@ public class TextOverflowHandler {
                                       @Nullable ChatFormatting color, Set<ChatFormatting> modifiers) {
         int maxPages = 100 - listener.getTotalPages() + 1;
         if (cursor != text.getLength() || maxPages < 1) return false;
-        
+
+        List<RichText> pages = paginateInsert(text, cursor, insert, maxPages, AdvanceProvider.of(font), null);
+        if (pages == null) return false;
+
+        applyOverflow(page, pages);
+        return true;
+    }
+
+    /**
+     * Like {@link #insertWithOverflow}, but the clipboard is parsed and paginated on a
+     * background thread. The pages are only applied if the page didn't change meanwhile.
+     * If they can't be applied, {@code onFailed} is told why.
+     */
+    public @Nullable BackgroundTask<List<RichText>> insertWithOverflowInBackground(int page, RichText text, int cursor, String clipboard,
+                                                                                 RichStyle style, boolean keepFormatting,
+                                                                                 Consumer<Component> onFailed) {
+        int totalPages = listener.getTotalPages();
+        int maxPages = 100 - totalPages + 1;
+        if (cursor != text.getLength() || maxPages < 1) return null;
+
+        // The font can only be used on the client thread, so we measure everything up front.
+        AdvanceProvider advances = GlyphAdvances.of(font).snapshot(text.getPlainText() + clipboard);
+
+        return BackgroundTask.start("Scribble paginator", (task) -> {
+            RichText insert = TextNormalizer.normalize(clipboard, style, keepFormatting);
+            return paginateInsert(text, cursor, insert, maxPages, advances, task);
+        }, (pages) -> {
+            if (listener.getTotalPages() == totalPages && listener.getPageContent(page) == text) {
+                applyOverflow(page, pages);
+            } else {
+                onFailed.accept(Component.translatable("text.scribble.paste_failed.page_changed"));
+            }
+        }, () -> onFailed.accept(Component.translatable("text.scribble.paste_failed.no_room")));
+    }
+
+    private static @Nullable List<RichText> paginateInsert(RichText text, int cursor, RichText insert, int maxPages,
+                                                           AdvanceProvider advances, Paginator.@Nullable Monitor monitor) {
         // Truncate insert to max pages × ~400 chars/page (conservative estimate)
         insert = insert.subText(0, Math.min(insert.getLength(), maxPages * 400));
 
         // Combine text + insert first, then split with word-wrapping
         RichText combined = text.insert(cursor, insert);
-        
-        List<RichText> pages = new ArrayList<>();
-        RichText remaining = combined;
-        for (; remaining.getLength() > 0 && pages.size() < maxPages; ) {
-            int len = findFittingLength(remaining);
-            pages.add(remaining.subText(0, len));
-            remaining = remaining.subText(len, remaining.getLength());
-        }
-        
+
+        // Split everything into pages in a single pass, instead of searching for the
+        // longest text that fits on every page separately.
+        Paginator.Pages result = Paginator.paginate(combined, PAGE_WIDTH, LINE_LIMIT, maxPages, advances, monitor);
+        List<RichText> pages = result.pages();
+
         // Reject only if no overflow pages were created (at page limit with no room)
         // Allow truncation when overflow pages were successfully added
-        if (remaining.getLength() > 0 && pages.size() == 1) {
-            return false;
+        if ((monitor != null && monitor.isCancelled()) || (result.end() < combined.getLength() && pages.size() == 1)) {
+            return null;
         }
 
+        return pages;
+    }
+
+    private void applyOverflow(int page, List<RichText> pages) {
         OverflowCommand cmd = new OverflowCommand(page, listener.getPageContent(page), pages);
         cmd.execute(listener);
         onCommand.accept(cmd);
-        return true;
     }
 
-    private int findFittingLength(RichText text) {
-        if (!wouldOverflow(text)) return text.getLength();
-        
-        // Binary search for max chars that fit on one page
-        int lo = 1, hi = text.getLength(), best = 1;
-        while (lo <= hi) {
-            int mid = (lo + hi) / 2;
-            if (!wouldOverflow(text.subText(0, mid))) { best = mid; lo = mid + 1; }
-            else hi = mid - 1;
-        }
-        
-        // Find last space in the fitted text for word wrapping
-        String plain = text.subText(0, best).getPlainText();
-        int lastNewline = plain.lastIndexOf('\n');
-        int searchStart = Math.max(0, lastNewline); // Only look for space after last newline
-        int lastSpace = plain.lastIndexOf(' ', best - 1);
-        
-        // Only use space if it's on the last visual line (after last newline)
-        if (lastSpace > searchStart) {
-            return lastSpace + 1;
-        }
-        return best;
-    }
+    public boolean reflowPages(int from, int to) {
+        List<RichText> before = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) before.add(listener.getPageContent(i));
 
-    private boolean wouldOverflow(RichText text) {
-        return font.getSplitter().splitLines(text, PAGE_WIDTH, Style.EMPTY).size() > LINE_LIMIT;
+        int maxPages = 100 - (listener.getTotalPages() - before.size());
+        List<RichText> after = Paginator.reflow(before, PAGE_WIDTH, LINE_LIMIT, maxPages, AdvanceProvider.of(font));
+        if (after == null || after.equals(before)) return false;
+
+        // Always keep at least one page, even if the whole range was empty.
+        if (after.isEmpty()) after = List.of(RichText.EMPTY);
+
+        ReflowCommand cmd = new ReflowCommand(from, before, after);
+        cmd.execute(listener);
+        onCommand.accept(cmd);
+        return true;
     }
 }
@@ -1,5 +1,6 @@
 package me.chrr.scribble.gui;
 
+import me.chrr.scribble.book.GlyphAdvances;
 import net.minecraft.client.gui.ActiveTextCollector;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.GuiGraphics;
@@ -10,8 +11,11 @@ import net.minecraft.client.input.MouseButtonEvent;
 import net.minecraft.network.chat.*;
 import net.minecraft.util.FormattedCharSequence;
 import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 // FIXME: is there a non-interactable-but-clickable abstract widget class I can use here?
@@ -19,6 +23,11 @@ import java.util.function.Consumer;
 @NullMarked
 public class BookTextWidget implements TextArea<Component> {
     public static final Style PAGE_TEXT_STYLE = Style.EMPTY.withoutShadow().withColor(0xff000000);
+    // A cache belongs to a single widget, which shows one page of every spread. This fits
+    // its page on the current spread and the prefetched spreads around it a couple times over.
+    private static final int MAX_CACHED_PAGES = 8;
+
+    private final Cache cache;
 
     private List<FormattedCharSequence> lines = List.of();
     private Component text = Component.empty();
@@ -35,7 +44,7 @@ public class BookTextWidget implements TextArea<Component> {
     private final Font font;
     private final Consumer<ClickEvent> handleClickEvent;
 
-    public BookTextWidget(int x, int y, int width, int height, Font font, Consumer<ClickEvent> handleClickEvent) {
+    public BookTextWidget(int x, int y, int width, int height, Font font, Consumer<ClickEvent> handleClickEvent, Cache cache) {
         this.x = x;
         this.y = y;
         this.width = width;
@@ -43,6 +52,9 @@ public class BookTextWidget implements TextArea<Component> {
 
         this.font = font;
         this.handleClickEvent = handleClickEvent;
+
+        this.cache = cache;
+        this.cache.validate(width, font);
     }
 
     @Override
@@ -85,9 +97,24 @@ public class BookTextWidget implements TextArea<Component> {
     @Override
     public void setText(Component text) {
         this.text = text;
+        this.lines = this.cache.pages(this.width, this.font).computeIfAbsent(text, this::split);
+    }
+
+    @Override
+    public void prefetch(Component text) {
+        if (!this.cache.pages(this.width, this.font).containsKey(text)) {
+            this.cache.pages(this.width, this.font).put(text, this.split(text));
+        }
+    }
+
+    @Override
+    public boolean isPrefetched(Component text) {
+        return this.cache.pages(this.width, this.font).containsKey(text);
+    }
 
+    private List<FormattedCharSequence> split(Component text) {
         FormattedText formattedText = ComponentUtils.mergeStyles(text, PAGE_TEXT_STYLE);
-        this.lines = this.font.split(formattedText, this.width);
+        return this.font.split(formattedText, this.width);
     }
 
     @Override
@@ -142,4 +169,38 @@ public class BookTextWidget implements TextArea<Component> {
     public void setDimmed(boolean dimmed) {
         this.dimmed = dimmed;
     }
-}
\ No newline at end of file
+
+    /**
+     * The split lines of recently shown and prefetched pages, so flipping back and forth
+     * doesn't split them again. This doesn't depend on where the widget is on the screen,
+     * so a screen can keep it around for the widgets it creates after being resized.
+     */
+    public static final class Cache {
+        private final Map<Component, List<FormattedCharSequence>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Component, List<FormattedCharSequence>> eldest) {
+                return this.size() > MAX_CACHED_PAGES;
+            }
+        };
+
+        private int width = -1;
+        private @Nullable Font font = null;
+        private int glyphGeneration = GlyphAdvances.getGeneration();
+
+        private Map<Component, List<FormattedCharSequence>> pages(int width, Font font) {
+            this.validate(width, font);
+            return this.pages;
+        }
+
+        private void validate(int width, Font font) {
+            // Lines that were split for another width or font can't be reused. The font
+            // stays the same object when it's reloaded, so we check the generation too.
+            if (width != this.width || font != this.font || this.glyphGeneration != GlyphAdvances.getGeneration()) {
+                this.pages.clear();
+                this.width = width;
+                this.font = font;
+                this.glyphGeneration = GlyphAdvances.getGeneration();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package me.chrr.scribble.gui;
+
+import me.chrr.scribble.book.GlyphAdvances;
+import net.minecraft.client.gui.Font;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.ComponentUtils;
+import net.minecraft.util.FormattedCharSequence;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The lines of book pages, split the same way {@link BookTextWidget} splits them, for
+ * views that show many pages at once. Pages are keyed by the identity of their
+ * content: an edited page has new content, so its old lines are never used again and
+ * are eventually evicted, while a page that's only moved keeps its lines.
+ */
+@NullMarked
+public final class PageLineCache<T> {
+    private static final int MAX_ENTRIES = 128;
+
+    private final Map<IdentityKey, List<FormattedCharSequence>> lines = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<IdentityKey, List<FormattedCharSequence>> eldest) {
+            return this.size() > MAX_ENTRIES;
+        }
+    };
+
+    private final int width;
+    private final Function<T, Component> asComponent;
+
+    private int glyphGeneration = GlyphAdvances.getGeneration();
+
+    /**
+     * @param width       the width to split pages at, in pixels.
+     * @param asComponent converts the content of a page to a component.
+     */
+    public PageLineCache(int width, Function<T, Component> asComponent) {
+        this.width = width;
+        this.asComponent = asComponent;
+    }
+
+    /**
+     * @return the lines of a page, splitting it if it isn't cached yet.
+     */
+    public List<FormattedCharSequence> get(T page, Font font) {
+        // If the fonts were reloaded, none of the split lines are valid anymore.
+        if (this.glyphGeneration != GlyphAdvances.getGeneration()) {
+            this.lines.clear();
+            this.glyphGeneration = GlyphAdvances.getGeneration();
+        }
+
+        return this.lines.computeIfAbsent(new IdentityKey(page), (key) -> {
+            Component component = this.asComponent.apply(page);
+            return font.split(ComponentUtils.mergeStyles(component, BookTextWidget.PAGE_TEXT_STYLE), this.width);
+        });
+    }
+
+    private record IdentityKey(Object value) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey key && this.value == key.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.value);
+        }
+    }
+}
@@ -9,5 +9,14 @@ import org.jspecify.annotations.NullMarked;
 public interface TextArea<T> extends Renderable, NarratableEntry, GuiEventListener {
     void setText(T text);
 
+    /** Prepare a page ahead of time, so showing it later with {@link #setText} is cheap. */
+    default void prefetch(T text) {
+    }
+
+    /** @return whether a page is ready to be shown, like after it was prefetched. */
+    default boolean isPrefetched(T text) {
+        return true;
+    }
+
     void setVisible(boolean visible);
 }
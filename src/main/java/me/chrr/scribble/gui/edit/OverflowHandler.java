@@ -1,5 +1,6 @@
 package me.chrr.scribble.gui.edit;
 
+import me.chrr.scribble.book.RichStyle;
 import me.chrr.scribble.book.RichText;
 import net.minecraft.ChatFormatting;
 import org.jspecify.annotations.NullMarked;
@@ -26,6 +27,20 @@ public interface OverflowHandler {
     boolean handleOverflow(RichText currentText, int cursor, RichText insert,
                            @Nullable ChatFormatting color, Set<ChatFormatting> modifiers);
 
+    /**
+     * Called when pasting so much text at the end of a page that it should be parsed and
+     * split into pages in the background, instead of freezing the game.
+     *
+     * @param currentText    the current text on the page
+     * @param cursor         the cursor position
+     * @param clipboard      the unparsed text to paste
+     * @param style          the style to give text without formatting codes
+     * @param keepFormatting whether to keep the formatting codes in the pasted text
+     * @return true if the paste was handled, false if it should be handled normally
+     */
+    boolean handleLargePaste(RichText currentText, int cursor, String clipboard,
+                             RichStyle style, boolean keepFormatting);
+
     /**
      * Called when Enter is pressed at the end of a page.
      *
@@ -0,0 +1,154 @@
+package me.chrr.scribble.gui.edit;
+
+import me.chrr.scribble.book.RichText;
+import me.chrr.scribble.book.TextLayout;
+import net.minecraft.util.FormattedCharSequence;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Everything needed to draw the lines of a {@link TextLayout}: the text of every line
+ * in a drawable form, and the x-offset of every position in it. These are made the
+ * first time a line is drawn, and kept for as long as the layout is shown. As a
+ * layout never changes, the cache only has to be rebuilt when the text is edited.
+ */
+@NullMarked
+final class RenderedLines {
+    private final TextLayout layout;
+    private final @Nullable FormattedCharSequence[] sequences;
+    private final int @Nullable [][] offsets;
+
+    private int selectionBegin = -1;
+    private int selectionEnd = -1;
+    private int selectionWidth = -1;
+    private int @Nullable [] selectionStarts = null;
+    private int @Nullable [] selectionEnds = null;
+
+    RenderedLines(TextLayout layout) {
+        this.layout = layout;
+        this.sequences = new FormattedCharSequence[layout.getLineCount()];
+        this.offsets = new int[layout.getLineCount()][];
+    }
+
+    TextLayout getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * @return the text of a line, ready to be drawn.
+     */
+    FormattedCharSequence getSequence(int line) {
+        FormattedCharSequence sequence = this.sequences[line];
+        if (sequence == null) {
+            RichText text = this.layout.getText().subText(this.layout.getLineStart(line), this.layout.getLineEnd(line));
+            sequence = text.getAsMutableComponent().getVisualOrderText();
+            this.sequences[line] = sequence;
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Get the x-offset of a position in a line, relative to the line start. Positions
+     * outside the line are clamped to it. If the line doesn't exist, this is zero.
+     */
+    int getX(int line, int position) {
+        if (line < 0 || line >= this.offsets.length) {
+            return 0;
+        }
+
+        int[] offsets = this.offsets[line];
+        if (offsets == null) {
+            offsets = this.layout.getLineOffsets(line);
+            this.offsets[line] = offsets;
+        }
+
+        int index = position - this.layout.getLineStart(line);
+        return offsets[Math.max(0, Math.min(index, offsets.length - 1))];
+    }
+
+    /**
+     * @return the width of a whole line. If the line doesn't exist, this is zero.
+     */
+    int getWidth(int line) {
+        return line < 0 || line >= this.offsets.length ? 0 : this.layout.getLineWidth(line);
+    }
+
+    /**
+     * Update the highlight rectangles for a selection. If only part of the selection
+     * changed, like when dragging it, only the lines around the change are updated.
+     *
+     * @param begin     the start of the selection (inclusive).
+     * @param end       the end of the selection (exclusive).
+     * @param fullWidth the width to highlight up to on lines the selection continues past.
+     */
+    void updateSelection(int begin, int end, int fullWidth) {
+        int lineCount = this.layout.getLineCount();
+        if (this.selectionStarts == null || this.selectionEnds == null || fullWidth != this.selectionWidth) {
+            this.selectionStarts = new int[lineCount];
+            this.selectionEnds = new int[lineCount];
+            this.selectionWidth = fullWidth;
+            this.selectionBegin = begin;
+            this.selectionEnd = end;
+            this.updateSelectionLines(0, lineCount - 1);
+            return;
+        }
+
+        int oldBegin = this.selectionBegin;
+        int oldEnd = this.selectionEnd;
+        this.selectionBegin = begin;
+        this.selectionEnd = end;
+
+        if (begin != oldBegin) {
+            this.updateSelectionLines(this.lineBefore(Math.min(begin, oldBegin)), this.layout.lineAt(Math.max(begin, oldBegin)));
+        }
+
+        if (end != oldEnd) {
+            this.updateSelectionLines(this.lineBefore(Math.min(end, oldEnd)), this.layout.lineAt(Math.max(end, oldEnd)));
+        }
+    }
+
+    /**
+     * @return whether a line is part of the last selection passed to {@link #updateSelection}.
+     */
+    boolean isSelected(int line) {
+        return this.selectionStarts != null && this.selectionStarts[line] >= 0;
+    }
+
+    int getSelectionStart(int line) {
+        return this.selectionStarts == null ? 0 : this.selectionStarts[line];
+    }
+
+    int getSelectionEnd(int line) {
+        return this.selectionEnds == null ? 0 : this.selectionEnds[line];
+    }
+
+    private void updateSelectionLines(int from, int to) {
+        int[] starts = this.selectionStarts;
+        int[] ends = this.selectionEnds;
+        if (starts == null || ends == null) {
+            return;
+        }
+
+        for (int line = Math.max(0, from); line <= to && line < starts.length; line++) {
+            int lineStart = this.layout.getLineStart(line);
+            int lineEnd = this.layout.getLineEnd(line);
+
+            if (this.selectionBegin <= lineEnd && lineStart <= this.selectionEnd) {
+                starts[line] = this.getX(line, Math.max(this.selectionBegin, lineStart));
+                ends[line] = this.selectionEnd > lineEnd ? this.selectionWidth : this.getX(line, this.selectionEnd);
+            } else {
+                starts[line] = -1;
+                ends[line] = -1;
+            }
+        }
+    }
+
+    /**
+     * @return the line before the one containing an offset, as that line can include
+     * the offset too if it was broken in the middle of a word.
+     */
+    private int lineBefore(int offset) {
+        return Math.max(0, this.layout.lineAt(offset) - 1);
+    }
+}
@@ -4,7 +4,12 @@ import com.mojang.blaze3d.platform.cursor.CursorTypes;
 import com.mojang.datafixers.util.Pair;
 import me.chrr.scribble.Scribble;
 import me.chrr.scribble.ScribbleConfig;
+import me.chrr.scribble.book.AdvanceProvider;
+import me.chrr.scribble.book.LayoutCache;
+import me.chrr.scribble.book.Paginator;
 import me.chrr.scribble.book.RichText;
+import me.chrr.scribble.book.TextLayout;
+import me.chrr.scribble.book.TextNormalizer;
 import me.chrr.scribble.gui.TextArea;
 import me.chrr.scribble.history.command.Command;
 import me.chrr.scribble.history.command.EditCommand;
@@ -33,10 +38,14 @@ import java.util.function.Consumer;
 
 @NullMarked
 public class RichEditBox extends MultiLineEditBox implements TextArea<RichText> {
+    private static final int BACKGROUND_PASTE_LENGTH = 4096;
+
     private final @Nullable Runnable onInvalidateFormat;
     private final @Nullable Consumer<Command> onHistoryPush;
     private final @Nullable OverflowHandler overflowHandler;
 
+    private final Cache cache;
+
     public @Nullable ChatFormatting color = ChatFormatting.BLACK;
     public Set<ChatFormatting> modifiers = new HashSet<>();
 
@@ -44,15 +53,16 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
                         Component placeholder, Component message, int textColor, boolean textShadow, int cursorColor,
                         boolean hasBackground, boolean hasOverlay,
                         @Nullable Runnable onInvalidateFormat, @Nullable Consumer<Command> onHistoryPush,
-                        @Nullable OverflowHandler overflowHandler) {
+                        @Nullable OverflowHandler overflowHandler, Cache cache) {
         super(font, x, y, width, height, placeholder, message, textColor, textShadow, cursorColor, hasBackground, hasOverlay);
 
         this.onInvalidateFormat = onInvalidateFormat;
         this.onHistoryPush = onHistoryPush;
         this.overflowHandler = overflowHandler;
+        this.cache = cache;
 
         this.textField = new RichMultiLineTextField(
-                font, width - this.totalInnerPadding(),
+                font, width - this.totalInnerPadding(), cache.layouts,
                 () -> new Pair<>(Optional.ofNullable(color).orElse(ChatFormatting.BLACK), modifiers),
                 (color, modifiers) -> {
                     this.color = color;
@@ -118,6 +128,7 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             return;
         }
 
+        RenderedLines lines = this.getRenderedLines();
         int cursor = this.textField.cursor();
         boolean blink = this.isFocused() && (Util.getMillis() - this.focusedTime) / 300L % 2L == 0L;
         boolean cursorInText = cursor < text.getLength();
@@ -126,6 +137,7 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
         int lastY = 0;
 
         int y = this.getInnerTop();
+        int lineIndex = 0;
         boolean hasDrawnCursor = false;
         for (MultilineTextField.StringView line : this.textField.iterateLines()) {
             boolean visible = this.withinContentAreaTopBottom(y, y + font.lineHeight);
@@ -134,11 +146,9 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             if (blink && cursorInText && cursor >= line.beginIndex() && cursor <= line.endIndex()) {
                 if (visible) {
                     // AD-HOC: Draw the entire line in one call. Vanilla does this differently, I don't know why
-                    RichText lineText = text.subText(line.beginIndex(), line.endIndex());
-                    graphics.drawString(this.font, lineText.getAsMutableComponent(), x, y, this.textColor, this.textShadow);
+                    this.drawLine(graphics, lines, lineIndex, x, y);
 
-                    RichText beforeCursor = text.subText(line.beginIndex(), cursor);
-                    lastX = x + this.font.width(beforeCursor);
+                    lastX = x + lines.getX(lineIndex, cursor);
 
                     if (!hasDrawnCursor) {
                         graphics.fill(lastX, y - 1, lastX + 1, y + 1 + this.font.lineHeight, this.getCursorColor());
@@ -148,15 +158,15 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             } else {
                 // Otherwise, just draw the line normally.
                 if (visible) {
-                    RichText lineText = text.subText(line.beginIndex(), line.endIndex());
-                    graphics.drawString(this.font, lineText.getAsMutableComponent(), x, y, this.textColor, this.textShadow);
-                    lastX = x + this.font.width(lineText) - 1;
+                    this.drawLine(graphics, lines, lineIndex, x, y);
+                    lastX = x + lines.getWidth(lineIndex) - 1;
                 }
 
                 lastY = y;
             }
 
             y += this.font.lineHeight;
+            lineIndex++;
         }
 
         // If we haven't drawn the cursor yet, it should be a '_' at the last draw position.
@@ -166,28 +176,19 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             }
         }
 
-        // If we have a selection, we want to draw it.
+        // If we have a selection, we want to draw it. The highlights are only recomputed
+        // for the lines where the selection changed.
         if (this.textField.hasSelection()) {
             MultilineTextField.StringView selection = this.textField.getSelected();
+            lines.updateSelection(selection.beginIndex(), selection.endIndex(), this.width - this.innerPadding());
+
             int x = this.getInnerLeft();
             y = this.getInnerTop();
 
-            // Loop through the lines, and draw selection boxes for each line.
-            for (MultilineTextField.StringView line : this.textField.iterateLines()) {
-                if (selection.beginIndex() <= line.endIndex()) {
-                    if (line.beginIndex() > selection.endIndex()) {
-                        break;
-                    }
-
-                    if (this.withinContentAreaTopBottom(y, y + this.font.lineHeight)) {
-                        int start = this.font.width(text.subText(line.beginIndex(), Math.max(selection.beginIndex(), line.beginIndex())));
-
-                        int end = selection.endIndex() > line.endIndex()
-                                ? this.width - this.innerPadding()
-                                : this.font.width(text.subText(line.beginIndex(), selection.endIndex()));
-
-                        graphics.textHighlight(x + start, y, x + end, y + this.font.lineHeight, true);
-                    }
+            for (int line = 0; line < lines.getLayout().getLineCount(); line++) {
+                if (lines.isSelected(line) && this.withinContentAreaTopBottom(y, y + this.font.lineHeight)) {
+                    graphics.textHighlight(x + lines.getSelectionStart(line), y,
+                            x + lines.getSelectionEnd(line), y + this.font.lineHeight, true);
                 }
 
                 y += this.font.lineHeight;
@@ -200,6 +201,23 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
         }
     }
 
+    private RenderedLines getRenderedLines() {
+        TextLayout layout = this.getRichTextField().getLayout();
+        RenderedLines lines = this.cache.renderedLines;
+        if (lines == null || lines.getLayout() != layout) {
+            lines = new RenderedLines(layout);
+            this.cache.renderedLines = lines;
+        }
+
+        return lines;
+    }
+
+    private void drawLine(GuiGraphics graphics, RenderedLines lines, int line, int x, int y) {
+        if (line < lines.getLayout().getLineCount()) {
+            graphics.drawString(this.font, lines.getSequence(line), x, y, this.textColor, this.textShadow);
+        }
+    }
+
     @Override
     public boolean charTyped(CharacterEvent event) {
         if (this.visible && this.isFocused() && event.isAllowedChatCharacter()) {
@@ -208,16 +226,14 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             int cursor = tf.cursor;
             
             // Create the text to insert
-            RichText insert = new RichText(event.codepointAsString(),
-                    Optional.ofNullable(color).orElse(ChatFormatting.BLACK), modifiers);
+            RichText insert = TextNormalizer.normalize(event.codepointAsString(), tf.getTypingStyle(), true);
             
             // Check if this would overflow
             RichText result = tf.hasSelection()
                     ? currentText.replace(tf.getSelected().beginIndex(), tf.getSelected().endIndex(), insert)
                     : currentText.insert(cursor, insert);
             
-            boolean wouldOverflow = tf.hasLineLimit() && tf.font.getSplitter()
-                    .splitLines(result, tf.width, net.minecraft.network.chat.Style.EMPTY).size() > tf.lineLimit;
+            boolean wouldOverflow = tf.overflowsLineLimit(result);
             
             // If would overflow and we have an overflow handler, try to handle it
             if (wouldOverflow && this.overflowHandler != null && cursor == currentText.getLength() && !tf.hasSelection()) {
@@ -227,8 +243,7 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             }
             
             // Normal behavior
-            EditCommand command = new EditCommand(this,
-                    (textField) -> textField.insertText(event.codepointAsString()));
+            EditCommand command = new EditCommand(this, (textField) -> textField.insertRichText(insert));
             command.executeEdit(this.getRichTextField());
             this.pushHistory(command);
             return true;
@@ -263,8 +278,7 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
 
         // Handle Enter at end of full page - create new page if overflow handler exists
         if ((event.key() == GLFW.GLFW_KEY_ENTER || event.key() == GLFW.GLFW_KEY_KP_ENTER) && isAtEndOfText) {
-            boolean pageFull = tf.hasLineLimit() && tf.font.getSplitter()
-                    .splitLines(currentText, tf.width, net.minecraft.network.chat.Style.EMPTY).size() >= tf.lineLimit;
+            boolean pageFull = tf.hasLineLimit() && tf.countLines(currentText) >= tf.lineLimit;
             if (pageFull) {
                 if (this.overflowHandler != null && this.overflowHandler.handleEnterAtEnd()) {
                     return true;
@@ -282,35 +296,32 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
 
         // Handle Paste with different behaviors based on config
         if (event.isPaste()) {
-            String clipboardText = Minecraft.getInstance().keyboardHandler.getClipboard().replace("\r", "");
+            String clipboardText = Minecraft.getInstance().keyboardHandler.getClipboard();
             boolean keepFormatting = Scribble.config().copyFormattingCodes.get() ^ event.hasShiftDown();
-            if (!keepFormatting) clipboardText = ChatFormatting.stripFormatting(clipboardText);
-            
-            RichText insert = ChatFormatting.stripFormatting(clipboardText).equals(clipboardText)
-                    ? new RichText(clipboardText, Optional.ofNullable(color).orElse(ChatFormatting.BLACK), modifiers)
-                    : RichText.fromFormattedString(clipboardText);
+
+            // Very large pastes that would overflow anyway are paginated in the background.
+            if (clipboardText.length() >= BACKGROUND_PASTE_LENGTH && isAtEndOfText && this.overflowHandler != null
+                    && Scribble.config().pasteBehavior.get() == ScribbleConfig.PasteBehavior.OVERFLOW
+                    && this.overflowHandler.handleLargePaste(currentText, cursor, clipboardText, tf.getTypingStyle(), keepFormatting)) {
+                return true;
+            }
+
+            RichText insert = TextNormalizer.normalize(clipboardText, tf.getTypingStyle(), keepFormatting);
 
             int start = tf.hasSelection() ? tf.getSelected().beginIndex() : cursor;
             int end = tf.hasSelection() ? tf.getSelected().endIndex() : cursor;
             RichText result = tf.hasSelection() ? currentText.replace(start, end, insert) : currentText.insert(cursor, insert);
-            boolean wouldOverflow = tf.hasLineLimit() && tf.font.getSplitter()
-                    .splitLines(result, tf.width, net.minecraft.network.chat.Style.EMPTY).size() > tf.lineLimit;
+            boolean wouldOverflow = tf.overflowsLineLimit(result);
 
             if (wouldOverflow) {
                 ScribbleConfig.PasteBehavior behavior = Scribble.config().pasteBehavior.get();
                 if (behavior == ScribbleConfig.PasteBehavior.FIT_PAGE) {
-                    int lo = 0, hi = insert.getLength(), best = 0;
-                    while (lo <= hi) {
-                        int mid = (lo + hi) / 2;
-                        RichText partial = insert.subText(0, mid);
-                        RichText partialResult = tf.hasSelection() ? currentText.replace(start, end, partial) : currentText.insert(cursor, partial);
-                        if (tf.font.getSplitter().splitLines(partialResult, tf.width, net.minecraft.network.chat.Style.EMPTY).size() <= tf.lineLimit) {
-                            best = mid; lo = mid + 1;
-                        } else hi = mid - 1;
-                    }
+                    int best = Paginator.fit(currentText.subText(0, start), insert,
+                            currentText.subText(end, currentText.getLength()),
+                            tf.width, tf.lineLimit, AdvanceProvider.of(tf.font));
                     if (best > 0) {
-                        String truncated = insert.subText(0, best).getAsFormattedString();
-                        EditCommand cmd = new EditCommand(this, t -> t.insertText(truncated));
+                        RichText truncated = insert.subText(0, best);
+                        EditCommand cmd = new EditCommand(this, t -> t.insertRichText(truncated));
                         cmd.executeEdit(tf);
                         this.pushHistory(cmd);
                     }
@@ -320,7 +331,7 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
                 }
             }
             
-            EditCommand command = new EditCommand(this, t -> t.keyPressed(event));
+            EditCommand command = new EditCommand(this, t -> t.insertRichText(insert));
             command.executeEdit(tf);
             this.pushHistory(command);
             return true;
@@ -354,6 +365,16 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
         this.getRichTextField().setValue(text, true);
     }
 
+    @Override
+    public void prefetch(RichText text) {
+        this.getRichTextField().prefetchLayout(text);
+    }
+
+    @Override
+    public boolean isPrefetched(RichText text) {
+        return this.getRichTextField().hasLayout(text);
+    }
+
     @Override
     public void setVisible(boolean visible) {
         this.visible = visible;
@@ -366,6 +387,7 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
         private Consumer<Command> onHistoryPush = null;
         @Nullable
         private OverflowHandler overflowHandler = null;
+        private Cache cache = new Cache();
 
         public Builder onInvalidateFormat(Runnable onInvalidateFormat) {
             this.onInvalidateFormat = onInvalidateFormat;
@@ -382,6 +404,11 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
             return this;
         }
 
+        public Builder withCache(Cache cache) {
+            this.cache = cache;
+            return this;
+        }
+
         @Override
         public MultiLineEditBox build(Font font, int width, int height, Component message) {
             return new RichEditBox(font,
@@ -389,7 +416,17 @@ public class RichEditBox extends MultiLineEditBox implements TextArea<RichText>
                     this.placeholder, message, this.textColor,
                     this.textShadow, this.cursorColor, this.showBackground,
                     this.showDecorations, this.onInvalidateFormat, this.onHistoryPush,
-                    this.overflowHandler);
+                    this.overflowHandler, this.cache);
         }
     }
+
+    /**
+     * The layouts and rendered lines of an edit box. These don't depend on where the
+     * edit box is on the screen, so a screen can keep them around and hand them to the
+     * edit box it creates after being resized, instead of laying everything out again.
+     */
+    public static final class Cache {
+        private final LayoutCache layouts = new LayoutCache();
+        private @Nullable RenderedLines renderedLines = null;
+    }
 }
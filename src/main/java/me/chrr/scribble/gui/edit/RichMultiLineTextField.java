@@ -3,16 +3,18 @@ package me.chrr.scribble.gui.edit;
 import com.mojang.datafixers.util.Pair;
 import me.chrr.scribble.KeyboardUtil;
 import me.chrr.scribble.Scribble;
+import me.chrr.scribble.book.LayoutCache;
+import me.chrr.scribble.book.RichStyle;
 import me.chrr.scribble.book.RichText;
+import me.chrr.scribble.book.TextLayout;
+import me.chrr.scribble.book.TextNormalizer;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.components.MultilineTextField;
 import net.minecraft.client.gui.components.Whence;
 import net.minecraft.client.input.KeyEvent;
-import net.minecraft.network.chat.Style;
 import net.minecraft.util.Mth;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -31,12 +33,17 @@ public class RichMultiLineTextField extends MultilineTextField {
 
     private RichText richText = RichText.EMPTY;
 
+    // Layouts of the current text and of the texts edits are about to apply, shared
+    // between the overflow checks, reflowing the display lines and rendering.
+    private final LayoutCache layoutCache;
+
     public RichMultiLineTextField(
-            Font font, int width,
+            Font font, int width, LayoutCache layoutCache,
             Supplier<Pair<ChatFormatting, Set<ChatFormatting>>> formatSupplier,
             BiConsumer<@Nullable ChatFormatting, Set<ChatFormatting>> formatListener
     ) {
         super(font, width);
+        this.layoutCache = layoutCache;
 
         this.formatSupplier = formatSupplier;
         this.formatListener = formatListener;
@@ -117,20 +124,19 @@ public class RichMultiLineTextField extends MultilineTextField {
 
     @Override
     public void insertText(String string) {
-        // We consider the RESET formatting code to be void, as it messes with books.
-        string = string.replaceAll(ChatFormatting.RESET.toString(), "");
-
-        if (string.isEmpty() && !this.hasSelection()) {
-            return;
-        }
+        this.insertText(string, true);
+    }
 
+    public void insertText(String string, boolean keepFormatting) {
         // If the string contains formatting codes, we keep them in. Otherwise,
         // we just type in the current color and modifiers.
-        assert this.formatSupplier != null;
-        Pair<ChatFormatting, Set<ChatFormatting>> style = this.formatSupplier.get();
-        RichText replacement = ChatFormatting.stripFormatting(string).equals(string)
-                ? new RichText(string, style.getFirst(), style.getSecond())
-                : RichText.fromFormattedString(string);
+        this.insertRichText(TextNormalizer.normalize(string, this.getTypingStyle(), keepFormatting));
+    }
+
+    public void insertRichText(RichText replacement) {
+        if (replacement.isEmpty() && !this.hasSelection()) {
+            return;
+        }
 
         StringView substring = this.getSelected();
         int start = substring.beginIndex();
@@ -155,11 +161,11 @@ public class RichMultiLineTextField extends MultilineTextField {
     @Override
     public void seekCursorLine(int offset) {
         if (offset != 0) {
-            int cursorX = this.font.width(this.richText.subText(this.getCursorLineView().beginIndex(), this.cursor)) + 2;
+            TextLayout layout = this.getLayout();
+            int cursorX = layout.getWidth(this.getCursorLineView().beginIndex(), this.cursor) + 2;
 
             StringView substring = this.getCursorLineView(offset);
-            int col = this.font.substrByWidth(this.richText.subText(substring.beginIndex(), substring.endIndex()), cursorX).getString().length();
-            this.seekCursor(Whence.ABSOLUTE, substring.beginIndex() + col);
+            this.seekCursor(Whence.ABSOLUTE, layout.getOffsetAtX(substring.beginIndex(), substring.endIndex(), cursorX));
         }
     }
 
@@ -169,19 +175,19 @@ public class RichMultiLineTextField extends MultilineTextField {
         int line = Mth.floor(y / (double) font.lineHeight);
 
         StringView substring = this.displayLines.get(Mth.clamp(line, 0, this.displayLines.size() - 1));
-        RichText lineText = this.richText.subText(substring.beginIndex(), substring.endIndex());
-        int col = this.font.substrByWidth(lineText, cursorX).getString().length();
+        TextLayout layout = this.getLayout();
+        int begin = substring.beginIndex();
+        int col = layout.getOffsetAtX(begin, substring.endIndex(), cursorX) - begin;
 
         if (col >= substring.endIndex() - 1) {
-            this.seekCursor(Whence.ABSOLUTE, substring.beginIndex() + col);
+            this.seekCursor(Whence.ABSOLUTE, begin + col);
         } else {
-            int width = this.font.width(lineText.subText(0, col));
+            int width = layout.getWidth(begin, begin + col);
             int overshot = cursorX - width;
 
-            RichText nextChar = lineText.subText(col, col + 1);
-            int charWidth = this.font.width(nextChar);
+            int charWidth = layout.getWidth(begin + col, begin + col + 1);
             int offset = (overshot * 2 >= charWidth) ? 1 : 0;
-            this.seekCursor(Whence.ABSOLUTE, substring.beginIndex() + col + offset);
+            this.seekCursor(Whence.ABSOLUTE, begin + col + offset);
         }
     }
 
@@ -203,9 +209,7 @@ public class RichMultiLineTextField extends MultilineTextField {
             if (KeyboardUtil.isKey(event.key(), "X")) this.insertText("");
             return true;
         } else if (ctrlNoAlt && KeyboardUtil.isKey(event.key(), "V")) {
-            String text = Minecraft.getInstance().keyboardHandler.getClipboard();
-            if (!keepFormatting) text = ChatFormatting.stripFormatting(text);
-            this.insertText(text);
+            this.insertText(Minecraft.getInstance().keyboardHandler.getClipboard(), keepFormatting);
             return true;
         }
 
@@ -228,23 +232,38 @@ public class RichMultiLineTextField extends MultilineTextField {
             return;
         }
 
-        MutableInt current = new MutableInt();
-        this.font.getSplitter().splitLines(this.richText, this.width, Style.EMPTY, (line, continued) -> {
-            String content = line.getString();
+        TextLayout layout = this.getLayout(this.richText);
+        for (int line = 0; line < layout.getLineCount(); line++) {
+            this.displayLines.add(new StringView(layout.getLineStart(line), layout.getLineEnd(line)));
+        }
+    }
 
-            int start = current.get().intValue();
-            int end = start + content.length();
+    /**
+     * @return the layout of the current text.
+     */
+    public TextLayout getLayout() {
+        return this.getLayout(this.richText);
+    }
 
-            this.displayLines.add(new StringView(start, end));
+    /**
+     * Get the layout of a text at the width of this text field. If we already laid out
+     * a similar text, like the current text before an edit, only the changed lines are
+     * wrapped again.
+     */
+    public TextLayout getLayout(RichText text) {
+        return this.layoutCache.get(text, this.width, this.font);
+    }
 
-            // If we wrapped on a whitespace character, we need to take that into account.
-            if (this.value.length() > end) {
-                char c = this.value.charAt(end);
-                end += (c == '\n' || c == ' ') ? 1 : 0;
-            }
+    /**
+     * Lay out a text that's likely to be shown in this text field soon, so that
+     * setting it as the value later doesn't have to.
+     */
+    public void prefetchLayout(RichText text) {
+        this.layoutCache.prefetch(text, this.width, this.font);
+    }
 
-            current.setValue(end);
-        });
+    public boolean hasLayout(RichText text) {
+        return this.layoutCache.contains(text, this.width, this.font);
     }
 
     @Override
@@ -253,6 +272,12 @@ public class RichMultiLineTextField extends MultilineTextField {
         return this.richText.subText(substring.beginIndex(), substring.endIndex()).getAsFormattedString();
     }
 
+    public RichStyle getTypingStyle() {
+        assert this.formatSupplier != null;
+        Pair<ChatFormatting, Set<ChatFormatting>> style = this.formatSupplier.get();
+        return RichStyle.of(style.getFirst(), style.getSecond());
+    }
+
     public RichText getRichText() {
         return richText;
     }
@@ -262,7 +287,18 @@ public class RichMultiLineTextField extends MultilineTextField {
         return richText.getAsFormattedString();
     }
 
-    private boolean overflowsLineLimit(RichText text) {
-        return this.hasLineLimit() && this.font.getSplitter().splitLines(text, this.width, Style.EMPTY).size() > this.lineLimit;
+    /**
+     * Count the lines a text would take up in this text field. We stop counting once
+     * we're over the line limit, as that's usually all we want to know.
+     *
+     * @return the amount of lines, or {@code lineLimit + 1} if the text doesn't fit.
+     */
+    public int countLines(RichText text) {
+        int limit = this.hasLineLimit() ? this.lineLimit : Integer.MAX_VALUE - 1;
+        return this.layoutCache.countLines(text, this.width, this.font, limit);
+    }
+
+    public boolean overflowsLineLimit(RichText text) {
+        return this.hasLineLimit() && this.countLines(text) > this.lineLimit;
     }
 }
@@ -6,6 +6,7 @@ import net.minecraft.ChatFormatting;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
+import java.util.List;
 import java.util.Set;
 
 @NullMarked
@@ -25,5 +26,11 @@ public interface HistoryListener {
 
     void setPageContent(int page, RichText content);
 
+    /** Move a page to another index, shifting the pages in between. */
+    void movePage(int from, int to);
+
+    /** Replace {@code count} pages starting at {@code page} with the given pages. */
+    void replacePages(int page, int count, List<RichText> pages);
+
     void refreshPages();
 }
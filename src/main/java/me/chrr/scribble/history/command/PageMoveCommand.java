@@ -0,0 +1,29 @@
+package me.chrr.scribble.history.command;
+
+import me.chrr.scribble.history.HistoryListener;
+import org.jspecify.annotations.NullMarked;
+
+@NullMarked
+public class PageMoveCommand implements Command {
+    private final int from;
+    private final int to;
+
+    public PageMoveCommand(int from, int to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public void execute(HistoryListener listener) {
+        listener.movePage(from, to);
+        listener.refreshPages();
+        listener.switchAndFocusPage(to);
+    }
+
+    @Override
+    public void rollback(HistoryListener listener) {
+        listener.movePage(to, from);
+        listener.refreshPages();
+        listener.switchAndFocusPage(from);
+    }
+}
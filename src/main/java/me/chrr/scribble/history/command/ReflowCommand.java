@@ -0,0 +1,34 @@
+package me.chrr.scribble.history.command;
+
+import me.chrr.scribble.book.RichText;
+import me.chrr.scribble.history.HistoryListener;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.List;
+
+@NullMarked
+public class ReflowCommand implements Command {
+    private final int page;
+    private final List<RichText> before;
+    private final List<RichText> after;
+
+    public ReflowCommand(int page, List<RichText> before, List<RichText> after) {
+        this.page = page;
+        this.before = List.copyOf(before);
+        this.after = List.copyOf(after);
+    }
+
+    @Override
+    public void execute(HistoryListener listener) {
+        listener.replacePages(page, before.size(), after);
+        listener.refreshPages();
+        listener.switchAndFocusPage(page);
+    }
+
+    @Override
+    public void rollback(HistoryListener listener) {
+        listener.replacePages(page, after.size(), before);
+        listener.refreshPages();
+        listener.switchAndFocusPage(page);
+    }
+}
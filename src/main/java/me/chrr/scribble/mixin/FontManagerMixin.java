@@ -0,0 +1,25 @@
+package me.chrr.scribble.mixin;
+
+import me.chrr.scribble.book.GlyphAdvances;
+import net.minecraft.client.gui.font.FontManager;
+import org.jspecify.annotations.NullMarked;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@NullMarked
+@Mixin(FontManager.class)
+public class FontManagerMixin {
+    // Our cached glyph advances are only valid for the fonts they were measured
+    // with, so we throw them away whenever the fonts are (re)loaded.
+    @Inject(method = "apply", at = @At("RETURN"))
+    public void onApply(CallbackInfo ci) {
+        GlyphAdvances.invalidateAll();
+    }
+
+    @Inject(method = "updateOptions", at = @At("RETURN"))
+    public void onUpdateOptions(CallbackInfo ci) {
+        GlyphAdvances.invalidateAll();
+    }
+}
@@ -0,0 +1,275 @@
+package me.chrr.scribble.screen;
+
+import me.chrr.scribble.gui.PageLineCache;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.screens.Screen;
+import net.minecraft.client.input.MouseButtonEvent;
+import net.minecraft.network.chat.CommonComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.util.FormattedCharSequence;
+import net.minecraft.util.Mth;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.List;
+
+/**
+ * A grid of scaled-down previews of every page in a book. Clicking a page jumps to
+ * it, and if the book allows it, pages can be dragged around to reorder them.
+ * <br>
+ * Only the rows that are on screen are drawn, and previews are only laid out once
+ * they come into view. Their lines are kept in the {@link PageLineCache} of the book
+ * screen, so they're still there the next time this is opened.
+ */
+@NullMarked
+public class BookOverviewScreen<T> extends Screen {
+    // Previews are drawn at half the size of a page in the book screen.
+    private static final float PREVIEW_SCALE = 0.5f;
+
+    private static final int THUMBNAIL_WIDTH = 63;
+    private static final int THUMBNAIL_HEIGHT = 70;
+    private static final int CELL_WIDTH = THUMBNAIL_WIDTH + 10;
+    private static final int CELL_HEIGHT = THUMBNAIL_HEIGHT + 16;
+
+    private static final int GRID_TOP = 32;
+    private static final int GRID_BOTTOM_MARGIN = 36;
+    private static final int DRAG_THRESHOLD = 4;
+
+    private final ScribbleBookScreen<T> parent;
+
+    private double scroll = 0.0;
+    private int jumpToPage = -1;
+
+    private int pressedPage = -1;
+    private boolean dragging = false;
+    private double pressX = 0.0;
+    private double pressY = 0.0;
+    private double dragX = 0.0;
+    private double dragY = 0.0;
+
+    public BookOverviewScreen(ScribbleBookScreen<T> parent) {
+        super(Component.translatable("text.scribble.overview.title"));
+        this.parent = parent;
+    }
+
+    @Override
+    protected void init() {
+        this.addRenderableWidget(Button.builder(CommonComponents.GUI_DONE, (button) -> this.onClose())
+                .pos((this.width - 200) / 2, this.height - 28).width(200).build());
+
+        // Start with the current page in view.
+        int row = this.parent.currentPage / this.getColumns();
+        this.scroll = row * CELL_HEIGHT - (this.getGridBottom() - GRID_TOP - CELL_HEIGHT) / 2.0;
+        this.clampScroll();
+    }
+
+    //region Rendering
+    @Override
+    public void render(GuiGraphics graphics, int mouseX, int mouseY, float delta) {
+        super.render(graphics, mouseX, mouseY, delta);
+        graphics.drawCenteredString(this.font, this.title, this.width / 2, 12, 0xffffffff);
+
+        int columns = this.getColumns();
+        int pages = this.parent.getTotalPages();
+        int hoveredPage = this.dragging ? -1 : this.getPageAt(mouseX, mouseY);
+        int targetPage = this.dragging ? this.getDropTarget() : -1;
+
+        // Only draw the rows that are visible.
+        int firstRow = Math.max(0, (int) Math.floor(this.scroll / CELL_HEIGHT));
+        int lastRow = (int) Math.floor((this.scroll + this.getGridBottom() - GRID_TOP) / CELL_HEIGHT);
+
+        graphics.enableScissor(0, GRID_TOP, this.width, this.getGridBottom());
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = 0; column < columns; column++) {
+                int page = row * columns + column;
+                if (page >= pages) {
+                    break;
+                }
+
+                int x = this.getGridLeft() + column * CELL_WIDTH;
+                int y = GRID_TOP + row * CELL_HEIGHT - (int) this.scroll;
+                boolean dimmed = this.dragging && page == this.pressedPage;
+                this.renderThumbnail(graphics, page, x, y, page == hoveredPage, dimmed);
+
+                if (page == targetPage && targetPage != this.pressedPage) {
+                    // Show where the page will end up: before or after the target.
+                    int markerX = targetPage < this.pressedPage ? x - 5 : x + THUMBNAIL_WIDTH + 4;
+                    graphics.fill(markerX, y, markerX + 1, y + THUMBNAIL_HEIGHT, 0xffffffff);
+                }
+            }
+        }
+        graphics.disableScissor();
+
+        if (this.dragging) {
+            this.renderThumbnail(graphics, this.pressedPage, (int) this.dragX - THUMBNAIL_WIDTH / 2,
+                    (int) this.dragY - THUMBNAIL_HEIGHT / 2, true, false);
+        }
+    }
+
+    private void renderThumbnail(GuiGraphics graphics, int page, int x, int y, boolean hovered, boolean dimmed) {
+        boolean current = page >= this.parent.currentPage && page < this.parent.currentPage + this.parent.pagesToShow;
+        int border = hovered || current ? 0xffffffff : 0xff6b5434;
+
+        graphics.fill(x - 1, y - 1, x + THUMBNAIL_WIDTH + 1, y + THUMBNAIL_HEIGHT + 1, border);
+        graphics.fill(x, y, x + THUMBNAIL_WIDTH, y + THUMBNAIL_HEIGHT, dimmed ? 0xff8f8878 : 0xfff5edd8);
+
+        if (!dimmed) {
+            List<FormattedCharSequence> lines = this.parent.pageLines.get(this.parent.getPage(page), this.font);
+            int maxLines = Math.min(lines.size(), ScribbleBookScreen.PAGE_HEIGHT / this.font.lineHeight);
+
+            graphics.pose().pushMatrix();
+            graphics.pose().translate(x + 3, y + 3);
+            graphics.pose().scale(PREVIEW_SCALE, PREVIEW_SCALE);
+            for (int i = 0; i < maxLines; i++) {
+                graphics.drawString(this.font, lines.get(i), 0, i * this.font.lineHeight, 0xff000000, false);
+            }
+            graphics.pose().popMatrix();
+        }
+
+        String number = String.valueOf(page + 1);
+        graphics.drawString(this.font, number, x + (THUMBNAIL_WIDTH - this.font.width(number)) / 2,
+                y + THUMBNAIL_HEIGHT + 4, current ? 0xffffffff : 0xffa0a0a0);
+    }
+    //endregion
+
+    //region Input
+    @Override
+    public boolean mouseClicked(MouseButtonEvent event, boolean doubleClick) {
+        if (super.mouseClicked(event, doubleClick)) {
+            return true;
+        }
+
+        int page = this.getPageAt(event.x(), event.y());
+        if (event.button() == 0 && page >= 0) {
+            this.pressedPage = page;
+            this.pressX = this.dragX = event.x();
+            this.pressY = this.dragY = event.y();
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean mouseDragged(MouseButtonEvent event, double dx, double dy) {
+        if (this.pressedPage < 0) {
+            return super.mouseDragged(event, dx, dy);
+        }
+
+        this.dragX = event.x();
+        this.dragY = event.y();
+        if (!this.dragging && this.parent.canReorderPages()
+                && Math.abs(this.dragX - this.pressX) + Math.abs(this.dragY - this.pressY) > DRAG_THRESHOLD) {
+            this.dragging = true;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean mouseReleased(MouseButtonEvent event) {
+        if (this.pressedPage < 0) {
+            return super.mouseReleased(event);
+        }
+
+        int page = this.pressedPage;
+        if (this.dragging) {
+            int target = this.getDropTarget();
+            if (target != page) {
+                this.parent.reorderPage(page, target);
+            }
+        } else if (this.getPageAt(event.x(), event.y()) == page) {
+            this.jumpToPage = page;
+            this.onClose();
+        }
+
+        this.pressedPage = -1;
+        this.dragging = false;
+        return true;
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double scrollX, double scrollY) {
+        this.scroll -= scrollY * CELL_HEIGHT / 2.0;
+        this.clampScroll();
+        return true;
+    }
+
+    @Override
+    public void tick() {
+        super.tick();
+
+        // Scroll along when dragging a page to the top or bottom of the grid.
+        if (this.dragging) {
+            if (this.dragY < GRID_TOP + 16) {
+                this.scroll -= 8;
+            } else if (this.dragY > this.getGridBottom() - 16) {
+                this.scroll += 8;
+            }
+
+            this.clampScroll();
+        }
+    }
+
+    @Override
+    public void onClose() {
+        // The book screen focuses its current page when it's shown again. We only jump
+        // to another page after that, so we never move the focus of a hidden screen.
+        this.minecraft.setScreen(this.parent);
+        if (this.jumpToPage >= 0) {
+            this.parent.jumpToPage(this.jumpToPage);
+        }
+    }
+    //endregion
+
+    //region Grid dimensions
+    private int getColumns() {
+        return Math.max(1, (this.width - 20) / CELL_WIDTH);
+    }
+
+    private int getGridLeft() {
+        int columns = Math.min(this.getColumns(), Math.max(1, this.parent.getTotalPages()));
+        return (this.width - columns * CELL_WIDTH) / 2 + (CELL_WIDTH - THUMBNAIL_WIDTH) / 2;
+    }
+
+    private int getGridBottom() {
+        return this.height - GRID_BOTTOM_MARGIN;
+    }
+
+    private void clampScroll() {
+        int rows = Mth.positiveCeilDiv(this.parent.getTotalPages(), this.getColumns());
+        int maxScroll = Math.max(0, rows * CELL_HEIGHT - (this.getGridBottom() - GRID_TOP));
+        this.scroll = Mth.clamp(this.scroll, 0.0, maxScroll);
+    }
+
+    /**
+     * @return the page whose thumbnail is at a position, or -1 if there isn't one.
+     */
+    private int getPageAt(double mouseX, double mouseY) {
+        if (mouseY < GRID_TOP || mouseY >= this.getGridBottom()) {
+            return -1;
+        }
+
+        int column = Mth.floor((mouseX - this.getGridLeft()) / CELL_WIDTH);
+        int row = Mth.floor((mouseY - GRID_TOP + this.scroll) / CELL_HEIGHT);
+        int page = row * this.getColumns() + column;
+        if (column < 0 || column >= this.getColumns() || page >= this.parent.getTotalPages()) {
+            return -1;
+        }
+
+        double x = mouseX - this.getGridLeft() - column * CELL_WIDTH;
+        double y = mouseY - GRID_TOP + this.scroll - row * CELL_HEIGHT;
+        return x < THUMBNAIL_WIDTH && y < THUMBNAIL_HEIGHT ? page : -1;
+    }
+
+    /**
+     * @return the index the dragged page would be moved to if it was dropped now.
+     */
+    private int getDropTarget() {
+        int column = Mth.clamp(Mth.floor((this.dragX - this.getGridLeft() + (CELL_WIDTH - THUMBNAIL_WIDTH) / 2.0) / CELL_WIDTH),
+                0, this.getColumns() - 1);
+        int row = Math.max(0, Mth.floor((Mth.clamp(this.dragY, GRID_TOP, this.getGridBottom() - 1) - GRID_TOP + this.scroll) / CELL_HEIGHT));
+        return Math.min(row * this.getColumns() + column, this.parent.getTotalPages() - 1);
+    }
+    //endregion
+}
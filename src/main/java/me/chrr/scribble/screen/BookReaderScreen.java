@@ -0,0 +1,229 @@
+package me.chrr.scribble.screen;
+
+import net.minecraft.client.gui.ActiveTextCollector;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.screens.Screen;
+import net.minecraft.client.input.KeyEvent;
+import net.minecraft.client.input.MouseButtonEvent;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.CommonComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+import net.minecraft.util.FormattedCharSequence;
+import net.minecraft.util.Mth;
+import org.jspecify.annotations.NullMarked;
+import org.lwjgl.glfw.GLFW;
+
+import java.util.List;
+
+/**
+ * A reading mode that shows a whole book as one scrolling column. Every page takes
+ * up the same height as it does in the book, so where a page is in the column never
+ * depends on its text. This way, only the pages in view ever have to be split into
+ * lines, and only the lines in view are drawn.
+ */
+@NullMarked
+public class BookReaderScreen extends Screen {
+    private static final int PADDING = 8;
+    private static final int PAGE_GAP = 16;
+    private static final int VIEW_TOP = 24;
+    private static final int VIEW_BOTTOM_MARGIN = 32;
+
+    private final ScribbleBookViewScreen parent;
+
+    private double scroll = 0.0;
+    private boolean navigated = false;
+
+    public BookReaderScreen(ScribbleBookViewScreen parent) {
+        super(Component.translatable("text.scribble.reader.title"));
+        this.parent = parent;
+    }
+
+    @Override
+    protected void init() {
+        this.addRenderableWidget(Button.builder(CommonComponents.GUI_DONE, (button) -> this.onClose())
+                .pos((this.width - 200) / 2, this.height - 26).width(200).build());
+
+        this.scrollToPage(this.parent.currentPage);
+    }
+
+    //region Rendering
+    @Override
+    public void render(GuiGraphics graphics, int mouseX, int mouseY, float delta) {
+        super.render(graphics, mouseX, mouseY, delta);
+
+        Component pageText = Component.translatable("book.pageIndicator",
+                this.getTopPage() + 1, Math.max(1, this.parent.getTotalPages()));
+        graphics.drawCenteredString(this.font, pageText, this.width / 2, 8, 0xffffffff);
+
+        int left = this.getColumnLeft();
+        graphics.fill(left - PADDING, VIEW_TOP, left + ScribbleBookScreen.PAGE_WIDTH + PADDING,
+                this.getViewBottom(), 0xfff5edd8);
+
+        graphics.enableScissor(left - PADDING, VIEW_TOP, left + ScribbleBookScreen.PAGE_WIDTH + PADDING,
+                this.getViewBottom());
+
+        ActiveTextCollector collector = graphics.textRenderer(GuiGraphics.HoveredTextEffects.TOOLTIP_AND_CURSOR);
+        this.visitVisibleLines(collector);
+
+        // Separate the pages, like they would be in a book.
+        int first = this.getTopPage();
+        for (int page = Math.max(1, first); page <= first + this.getVisiblePages()
+                && page < this.parent.getTotalPages(); page++) {
+            int y = this.getPageY(page) - PAGE_GAP / 2;
+            graphics.fill(left, y, left + ScribbleBookScreen.PAGE_WIDTH, y + 1, 0xffc8b89a);
+        }
+
+        graphics.disableScissor();
+    }
+
+    /**
+     * Visit every line that's at least partially in view, splitting only the pages
+     * those lines are on.
+     */
+    private void visitVisibleLines(ActiveTextCollector collector) {
+        int left = this.getColumnLeft();
+        int pages = this.parent.getTotalPages();
+        int first = this.getTopPage();
+
+        for (int page = first; page <= first + this.getVisiblePages() && page < pages; page++) {
+            int pageY = this.getPageY(page);
+            int lineHeight = this.font.lineHeight;
+
+            List<FormattedCharSequence> lines = this.parent.pageLines.get(this.parent.getPage(page), this.font);
+            int maxLines = Math.min(lines.size(), ScribbleBookScreen.PAGE_HEIGHT / lineHeight);
+
+            int firstLine = Math.max(0, (VIEW_TOP - pageY) / lineHeight);
+            for (int line = firstLine; line < maxLines; line++) {
+                int y = pageY + line * lineHeight;
+                if (y >= this.getViewBottom()) {
+                    break;
+                }
+
+                collector.accept(left, y, lines.get(line));
+            }
+        }
+    }
+    //endregion
+
+    //region Input
+    @Override
+    public boolean mouseClicked(MouseButtonEvent event, boolean doubleClick) {
+        if (super.mouseClicked(event, doubleClick)) {
+            return true;
+        }
+
+        if (event.button() == 0 && event.y() >= VIEW_TOP && event.y() < this.getViewBottom()) {
+            ActiveTextCollector.ClickableStyleFinder clickableStyleFinder
+                    = new ActiveTextCollector.ClickableStyleFinder(this.font, (int) event.x(), (int) event.y());
+            this.visitVisibleLines(clickableStyleFinder);
+
+            Style style = clickableStyleFinder.result();
+            if (style != null && style.getClickEvent() != null) {
+                this.handleClickEvent(style.getClickEvent());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void handleClickEvent(ClickEvent event) {
+        // Page links scroll the column, everything else is handled like in the book.
+        if (event instanceof ClickEvent.ChangePage(int page)) {
+            this.navigated = true;
+            this.scrollToPage(page - 1);
+        } else {
+            this.parent.handleClickEvent(event);
+        }
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double scrollX, double scrollY) {
+        this.navigated = true;
+        this.scrollBy(-scrollY * this.font.lineHeight * 3);
+        return true;
+    }
+
+    @Override
+    public boolean keyPressed(KeyEvent event) {
+        int viewHeight = this.getViewBottom() - VIEW_TOP;
+        switch (event.key()) {
+            case GLFW.GLFW_KEY_UP -> this.scrollBy(-this.font.lineHeight);
+            case GLFW.GLFW_KEY_DOWN -> this.scrollBy(this.font.lineHeight);
+            case GLFW.GLFW_KEY_PAGE_UP -> this.scrollBy(-viewHeight);
+            case GLFW.GLFW_KEY_PAGE_DOWN -> this.scrollBy(viewHeight);
+            case GLFW.GLFW_KEY_HOME -> this.scrollToPage(0);
+            case GLFW.GLFW_KEY_END -> this.scrollToPage(this.parent.getTotalPages() - 1);
+            default -> {
+                return super.keyPressed(event);
+            }
+        }
+
+        this.navigated = true;
+        return true;
+    }
+
+    @Override
+    public void onClose() {
+        // Go back to the page we were reading. If we didn't go to another page, we leave
+        // the book alone, so a lectern isn't told that the page changed.
+        int page = this.getTopPage();
+        if (this.navigated && page != this.parent.currentPage) {
+            this.parent.jumpToPage(page);
+        }
+
+        this.minecraft.setScreen(this.parent);
+    }
+
+    @Override
+    public boolean isPauseScreen() {
+        return this.parent.isPauseScreen();
+    }
+    //endregion
+
+    //region Scrolling and dimensions
+    private void scrollToPage(int page) {
+        this.scroll = page * this.getPageStride();
+        this.scrollBy(0);
+    }
+
+    private void scrollBy(double amount) {
+        int viewHeight = this.getViewBottom() - VIEW_TOP;
+        int maxScroll = Math.max(0, this.parent.getTotalPages() * this.getPageStride() + PADDING - viewHeight);
+        this.scroll = Mth.clamp(this.scroll + amount, 0.0, maxScroll);
+    }
+
+    private int getPageStride() {
+        return ScribbleBookScreen.PAGE_HEIGHT + PAGE_GAP;
+    }
+
+    private int getPageY(int page) {
+        return VIEW_TOP + PADDING + page * this.getPageStride() - (int) this.scroll;
+    }
+
+    /**
+     * @return the first page that's at least partially in view.
+     */
+    private int getTopPage() {
+        int page = (int) (this.scroll / this.getPageStride());
+        return Mth.clamp(page, 0, Math.max(0, this.parent.getTotalPages() - 1));
+    }
+
+    /**
+     * @return the amount of pages after the top page that can be in view at the same time.
+     */
+    private int getVisiblePages() {
+        return Mth.positiveCeilDiv(this.getViewBottom() - VIEW_TOP, this.getPageStride());
+    }
+
+    private int getColumnLeft() {
+        return (this.width - ScribbleBookScreen.PAGE_WIDTH) / 2;
+    }
+
+    private int getViewBottom() {
+        return this.height - VIEW_BOTTOM_MARGIN;
+    }
+    //endregion
+}
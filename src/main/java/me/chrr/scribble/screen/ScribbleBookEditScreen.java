@@ -4,8 +4,11 @@ import it.unimi.dsi.fastutil.booleans.BooleanConsumer;
 import me.chrr.scribble.KeyboardUtil;
 import me.chrr.scribble.Scribble;
 import me.chrr.scribble.SetReturnScreen;
+import me.chrr.scribble.book.BackgroundTask;
 import me.chrr.scribble.book.BookFile;
+import me.chrr.scribble.book.BookPage;
 import me.chrr.scribble.book.FileChooser;
+import me.chrr.scribble.book.RichStyle;
 import me.chrr.scribble.book.RichText;
 import me.chrr.scribble.book.TextOverflowHandler;
 import me.chrr.scribble.ScribbleConfig;
@@ -22,14 +25,19 @@ import me.chrr.scribble.history.command.Command;
 import me.chrr.scribble.history.command.EditCommand;
 import me.chrr.scribble.history.command.PageDeleteCommand;
 import me.chrr.scribble.history.command.PageInsertCommand;
+import me.chrr.scribble.history.command.PageMoveCommand;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.ComponentPath;
+import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.components.events.GuiEventListener;
+import net.minecraft.client.gui.components.toasts.SystemToast;
 import net.minecraft.client.gui.screens.ConfirmScreen;
 import net.minecraft.client.gui.screens.inventory.BookSignScreen;
+import net.minecraft.client.input.CharacterEvent;
 import net.minecraft.client.input.KeyEvent;
+import net.minecraft.client.input.MouseButtonEvent;
 import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.network.chat.CommonComponents;
@@ -43,6 +51,7 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.component.WritableBookContent;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
+import org.lwjgl.glfw.GLFW;
 
 import java.nio.file.Path;
 import java.util.*;
@@ -64,7 +73,7 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
     private final ItemStack itemStack;
     private final InteractionHand hand;
 
-    private final List<RichText> pages;
+    private final List<BookPage> pages;
     private final CommandManager commandManager = new CommandManager(this);
 
     private @Nullable RichEditBox lastFocusedEditBox = null;
@@ -73,6 +82,9 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
     private @Nullable IconButtonWidget undoButton;
     private @Nullable IconButtonWidget redoButton;
 
+    // The caches of every edit box, which outlive the widgets when the screen is resized.
+    private final List<RichEditBox.Cache> editBoxCaches = new ArrayList<>();
+
     private final List<IconButtonWidget> insertPageButtons = new ArrayList<>();
     private final List<IconButtonWidget> deletePageButtons = new ArrayList<>();
 
@@ -85,6 +97,7 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
     private List<ColorSwatchWidget> colorSwatches = List.of();
 
     private @Nullable TextOverflowHandler overflowHandler;
+    private @Nullable BackgroundTask<?> backgroundTask;
 
     public ScribbleBookEditScreen(Player player, ItemStack itemStack, InteractionHand hand, WritableBookContent book) {
         super(Component.translatable("book.edit.title"));
@@ -93,13 +106,14 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
         this.itemStack = itemStack;
         this.hand = hand;
 
+        // Pages are only parsed once they're shown or edited.
         this.pages = new ArrayList<>();
         book.getPages(Minecraft.getInstance().isTextFilteringEnabled())
-                .forEach((page) -> this.pages.add(RichText.fromFormattedString(page)));
+                .forEach((page) -> this.pages.add(BookPage.fromFormattedString(page)));
 
         if (this.pages.isEmpty()) {
             for (int i = 0; i < this.pagesToShow; i++) {
-                this.pages.add(RichText.EMPTY);
+                this.pages.add(BookPage.EMPTY);
             }
         }
     }
@@ -137,6 +151,16 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
                         () -> FileChooser.chooseFile(false, this::loadFromFile)),
                 x, y + 12 * 3 + 4, 60, 90, 12, 12));
 
+        // Shift-clicking only reflows the pages from the current one onward.
+        addRenderableWidget(new IconButtonWidget(
+                Component.translatable("text.scribble.action.reflow_book"),
+                () -> this.reflowPages(this.minecraft.hasShiftDown() ? this.currentPage : 0),
+                x, y + 12 * 4 + 8, 72, 90, 12, 12));
+        addRenderableWidget(new IconButtonWidget(
+                Component.translatable("text.scribble.action.overview"),
+                this::openOverview,
+                x, y + 12 * 5 + 8, 84, 90, 12, 12));
+
         this.invalidateActionButtons();
     }
 
@@ -176,7 +200,7 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
             this.deletePageButtons.add(addRenderableWidget(new IconButtonWidget(deleteText,
                     () -> {
                         PageDeleteCommand command = new PageDeleteCommand(this.currentPage + pageOffset,
-                                this.pages.get(this.currentPage + pageOffset), 1); // Navigate right
+                                this.getPageContent(this.currentPage + pageOffset), 1); // Navigate right
                         command.execute(this);
                         commandManager.push(command);
                     },
@@ -227,7 +251,12 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
                 ? createOverflowHandlerForPage(pageOffset)
                 : null;
 
+        while (this.editBoxCaches.size() <= pageOffset) {
+            this.editBoxCaches.add(new RichEditBox.Cache());
+        }
+
         RichEditBox editBox = (RichEditBox) new RichEditBox.Builder()
+                .withCache(this.editBoxCaches.get(pageOffset))
                 .onHistoryPush((command) -> this.pushCommand(pageOffset, command))
                 .onInvalidateFormat(this::invalidateFormattingButtons)
                 .onOverflow(editBoxOverflowHandler)
@@ -241,9 +270,9 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
         editBox.setLineLimit(height / this.font.lineHeight);
 
         editBox.setRichValueListener((text) -> {
-            RichText existing = this.pages.get(this.currentPage + pageOffset);
+            RichText existing = this.getPageContent(this.currentPage + pageOffset);
             if (existing != text) {
-                this.pages.set(this.currentPage + pageOffset, text);
+                this.pages.set(this.currentPage + pageOffset, BookPage.of(text));
                 this.dirty = true;
             }
         });
@@ -261,6 +290,20 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
                 return overflowHandler.insertWithOverflow(page, currentText, cursor, insert, color, modifiers);
             }
 
+            @Override
+            public boolean handleLargePaste(RichText currentText, int cursor, String clipboard,
+                                            RichStyle style, boolean keepFormatting) {
+                if (overflowHandler == null || getTotalPages() >= 100) return false;
+                int page = currentPage + pageOffset;
+                BackgroundTask<?> task = overflowHandler.insertWithOverflowInBackground(
+                        page, currentText, cursor, clipboard, style, keepFormatting,
+                        (reason) -> showFailure("text.scribble.paste_failed.title", reason));
+                if (task == null) return false;
+
+                startBackgroundTask(task);
+                return true;
+            }
+
             @Override
             public boolean handleEnterAtEnd() {
                 if (getTotalPages() >= 100) return false;
@@ -276,7 +319,7 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
                 if (getTotalPages() <= 1) return false;
                 int page = currentPage + pageOffset;
                 if (page <= 0) return false;
-                PageDeleteCommand command = new PageDeleteCommand(page, pages.get(page), -1); // Navigate left
+                PageDeleteCommand command = new PageDeleteCommand(page, getPageContent(page), -1); // Navigate left
                 command.execute(ScribbleBookEditScreen.this);
                 commandManager.push(command);
                 return true;
@@ -284,6 +327,12 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
         };
     }
 
+    private void reflowPages(int from) {
+        if (this.overflowHandler != null) {
+            this.overflowHandler.reflowPages(from, this.getTotalPages());
+        }
+    }
+
     private void updateFocusedEditBox() {
         if (this.getFocused() instanceof RichEditBox focusedEditBox && this.lastFocusedEditBox != focusedEditBox) {
             this.lastFocusedEditBox = focusedEditBox;
@@ -336,30 +385,92 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
     }
 
     private void loadFromFile(Path path) {
-        try {
-            BookFile bookFile = BookFile.readFile(path);
-
+        // Reading a whole book can take a while, so we do it in the background. The
+        // pages themselves are only parsed once they're shown or edited.
+        this.startBackgroundTask(BackgroundTask.start("Scribble book loader", (task) -> {
+            try {
+                BookFile bookFile = BookFile.readFile(path);
+                task.setProgress(0.5f);
+
+                List<BookPage> pages = new ArrayList<>(bookFile.pages().size());
+                for (String page : bookFile.pages()) {
+                    pages.add(BookPage.fromFormattedString(page));
+                    task.setProgress(0.5f + 0.5f * pages.size() / bookFile.pages().size());
+                }
+
+                return pages;
+            } catch (Exception e) {
+                Scribble.LOGGER.error("could not load book from file", e);
+                return null;
+            }
+        }, (pages) -> {
             this.pages.clear();
-            this.pages.addAll(bookFile.pages().stream().map(RichText::fromFormattedString).toList());
+            this.pages.addAll(pages);
             this.commandManager.clear();
             this.dirty = true;
 
             this.showPage(0, false);
             this.updateCurrentPages();
-        } catch (Exception e) {
-            Scribble.LOGGER.error("could not load book from file", e);
+            this.invalidateActionButtons();
+        }, () -> this.showFailure("text.scribble.load_failed.title",
+                Component.translatable("text.scribble.load_failed.description"))));
+    }
+
+    private void showFailure(String title, Component description) {
+        SystemToast.add(this.minecraft.getToastManager(), SystemToast.SystemToastId.FILE_DROP_FAILURE,
+                Component.translatable(title), description);
+    }
+
+    private void startBackgroundTask(BackgroundTask<?> task) {
+        if (this.backgroundTask != null) {
+            this.backgroundTask.cancel();
+        }
+
+        this.backgroundTask = task;
+    }
+
+    /**
+     * @return whether there's background work that will change the book once it's done.
+     * The book can't be edited in the meantime, so the result still applies.
+     */
+    private boolean isBusy() {
+        return this.backgroundTask != null && !this.backgroundTask.isDone();
+    }
+
+    @Override
+    public void render(GuiGraphics graphics, int mouseX, int mouseY, float delta) {
+        super.render(graphics, mouseX, mouseY, delta);
+
+        // Show the progress of any background work above the book.
+        BackgroundTask<?> task = this.backgroundTask;
+        if (task != null && !task.isDone()) {
+            Component text = Component.translatable("text.scribble.working", (int) (task.getProgress() * 100f));
+            graphics.drawCenteredString(this.font, text, this.width / 2, Math.max(2, this.getBackgroundY() - 10), 0xffffffff);
         }
     }
 
     @Override
     public void onClose() {
-        this.confirmIf(this.dirty, "quit_without_saving", super::onClose);
+        this.confirmIf(this.dirty, "quit_without_saving", () -> {
+            // Any work in progress belongs to this screen, so it can't be applied anymore.
+            if (this.backgroundTask != null) {
+                this.backgroundTask.cancel();
+                this.backgroundTask = null;
+            }
+
+            super.onClose();
+        });
     }
     //endregion
 
     //region Hotkeys
     @Override
     public boolean keyPressed(KeyEvent keyEvent) {
+        // While background work is running, the only thing we allow is closing the screen.
+        if (this.isBusy() && keyEvent.key() != GLFW.GLFW_KEY_ESCAPE) {
+            return true;
+        }
+
         if (keyEvent.hasControlDown() && !keyEvent.hasAltDown()) {
             // On Ctrl-Z, undo.
             if ((KeyboardUtil.isKey(keyEvent.key(), "Z") && !keyEvent.hasShiftDown()
@@ -381,6 +492,16 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
 
         return super.keyPressed(keyEvent);
     }
+
+    @Override
+    public boolean charTyped(CharacterEvent event) {
+        return this.isBusy() || super.charTyped(event);
+    }
+
+    @Override
+    public boolean mouseClicked(MouseButtonEvent event, boolean doubleClick) {
+        return this.isBusy() || super.mouseClicked(event, doubleClick);
+    }
     //endregion
 
     //region Formatting
@@ -466,7 +587,12 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
     //region Page Management
     @Override
     protected RichText getPage(int page) {
-        return this.pages.get(page);
+        return this.getPageContent(page);
+    }
+
+    @Override
+    protected Component asComponent(RichText page) {
+        return page.getAsMutableComponent();
     }
 
     @Override
@@ -481,16 +607,17 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
     }
 
     private List<String> getPagesAsStrings(boolean removeTrailingPages) {
-        List<RichText> pages = new ArrayList<>(this.pages);
+        List<BookPage> pages = new ArrayList<>(this.pages);
 
         if (removeTrailingPages) {
-            ListIterator<RichText> listIterator = pages.listIterator(pages.size());
+            ListIterator<BookPage> listIterator = pages.listIterator(pages.size());
             while (listIterator.hasPrevious() && listIterator.previous().isEmpty()) {
                 listIterator.remove();
             }
         }
 
-        return pages.stream().map(RichText::getAsFormattedString).toList();
+        // Pages that were never touched are written back as they were read.
+        return pages.stream().map(BookPage::getFormattedString).toList();
     }
 
     private void saveChanges() {
@@ -511,11 +638,26 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
 
     @Override
     protected void insertEmptyPageAt(int page) {
-        this.pages.add(page, RichText.EMPTY);
+        this.pages.add(page, BookPage.EMPTY);
+    }
+
+    @Override
+    protected boolean canReorderPages() {
+        return true;
+    }
+
+    @Override
+    protected void reorderPage(int from, int to) {
+        // Pages are reordered from the overview, so we only move the page here. Executing
+        // the command would also switch to it and focus it, while this screen isn't shown.
+        this.movePage(from, to);
+        this.refreshPages();
+        this.commandManager.push(new PageMoveCommand(from, to));
+        this.invalidateActionButtons();
     }
 
     private boolean isEmpty() {
-        return this.pages.stream().allMatch(RichText::isEmpty);
+        return this.pages.stream().allMatch(BookPage::isEmpty);
     }
     //endregion
 
@@ -554,7 +696,7 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
 
     @Override
     public void insertPageAt(int page, @Nullable RichText content) {
-        this.pages.add(page, Optional.ofNullable(content).orElse(RichText.EMPTY));
+        this.pages.add(page, content == null ? BookPage.EMPTY : BookPage.of(content));
         this.dirty = true;
         this.showPage(page, false);
         this.updateCurrentPages();
@@ -571,12 +713,26 @@ public class ScribbleBookEditScreen extends ScribbleBookScreen<RichText> impleme
 
     @Override
     public RichText getPageContent(int page) {
-        return this.pages.get(page);
+        return this.pages.get(page).getText();
     }
 
     @Override
     public void setPageContent(int page, RichText content) {
-        this.pages.set(page, content);
+        this.pages.set(page, BookPage.of(content));
+        this.dirty = true;
+    }
+
+    @Override
+    public void movePage(int from, int to) {
+        // Pages are moved as they are, so pages that weren't parsed yet still aren't.
+        this.pages.add(to, this.pages.remove(from));
+        this.dirty = true;
+    }
+
+    @Override
+    public void replacePages(int page, int count, List<RichText> pages) {
+        this.pages.subList(page, page + count).clear();
+        this.pages.addAll(page, pages.stream().map(BookPage::of).toList());
         this.dirty = true;
     }
 
@@ -1,6 +1,7 @@
 package me.chrr.scribble.screen;
 
 import me.chrr.scribble.Scribble;
+import me.chrr.scribble.gui.PageLineCache;
 import me.chrr.scribble.gui.PageNumberWidget;
 import me.chrr.scribble.gui.TextArea;
 import me.chrr.scribble.gui.button.IconButtonWidget;
@@ -25,6 +26,9 @@ import java.util.Objects;
 
 @NullMarked
 public abstract class ScribbleBookScreen<T> extends Screen {
+    public static final int PAGE_WIDTH = 114;
+    public static final int PAGE_HEIGHT = 128;
+
     public int currentPage = 0;
     public int pagesToShow = 1;
 
@@ -36,6 +40,9 @@ public abstract class ScribbleBookScreen<T> extends Screen {
     public @Nullable PageButton backButton;
     public @Nullable PageButton forwardButton;
 
+    // Lines of the pages in views that show many of them at once, like the overview.
+    final PageLineCache<T> pageLines = new PageLineCache<>(PAGE_WIDTH, this::asComponent);
+
     protected ScribbleBookScreen(Component title) {
         super(title);
     }
@@ -55,7 +62,7 @@ public abstract class ScribbleBookScreen<T> extends Screen {
 
         this.textAreas.clear();
         for (int i = 0; i < this.pagesToShow; i++) {
-            TextArea<T> textArea = createTextArea(x + 36 + i * 126, y + 30, 114, 128, i);
+            TextArea<T> textArea = createTextArea(x + 36 + i * 126, y + 30, PAGE_WIDTH, PAGE_HEIGHT, i);
             this.textAreas.add(addRenderableWidget(textArea));
         }
 
@@ -124,6 +131,10 @@ public abstract class ScribbleBookScreen<T> extends Screen {
         this.showPage(page, false);
     }
 
+    public void openOverview() {
+        this.minecraft.setScreen(new BookOverviewScreen<>(this));
+    }
+
     public void showPage(int page, boolean insertIfMissing) {
         // Insert pages so the requested page exists if needed.
         // (note that min+max instead of clamp here is deliberate)
@@ -147,6 +158,43 @@ public abstract class ScribbleBookScreen<T> extends Screen {
         }
     }
 
+    @Override
+    public void tick() {
+        super.tick();
+        this.prefetchPage();
+    }
+
+    /**
+     * Prepare one of the pages on the spreads before and after the current one, so
+     * turning the page only has to swap in the finished layout. We only do a single
+     * page per tick, so flipping through a book quickly never waits on this. We ask the
+     * text areas which pages they still have, so pages their caches have thrown away in
+     * the meantime are prepared again.
+     */
+    private void prefetchPage() {
+        if (this.textAreas.size() < this.pagesToShow) {
+            return;
+        }
+
+        // The next spread is more likely to be shown than the previous one.
+        for (int i = 0; i < this.pagesToShow * 2; i++) {
+            int page = i < this.pagesToShow
+                    ? this.currentPage + this.pagesToShow + i
+                    : this.currentPage - this.pagesToShow * 2 + i;
+            if (page < 0 || page >= this.getTotalPages()) {
+                continue;
+            }
+
+            // Every page is always shown in the same text area, as spreads start at a multiple of their size.
+            TextArea<T> textArea = this.textAreas.get(page % this.pagesToShow);
+            T text = this.getPage(page);
+            if (!textArea.isPrefetched(text)) {
+                textArea.prefetch(text);
+                return;
+            }
+        }
+    }
+
     public void goPageForward(boolean toEnd) {
         if (toEnd) {
             showPage(this.getTotalPages() - 1, false);
@@ -243,6 +291,13 @@ public abstract class ScribbleBookScreen<T> extends Screen {
     protected void insertEmptyPageAt(int page) {
     }
 
+    protected boolean canReorderPages() {
+        return false;
+    }
+
+    protected void reorderPage(int from, int to) {
+    }
+
     protected abstract boolean shouldShowActionButtons();
 
     protected abstract void initActionButtons(int x, int y);
@@ -256,6 +311,8 @@ public abstract class ScribbleBookScreen<T> extends Screen {
 
     protected abstract T getPage(int page);
 
+    protected abstract Component asComponent(T page);
+
     protected abstract int getTotalPages();
     //endregion
 }
@@ -16,6 +16,7 @@ import net.minecraft.network.chat.CommonComponents;
 import net.minecraft.network.chat.Component;
 import org.jspecify.annotations.NullMarked;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -23,6 +24,9 @@ import java.util.Objects;
 public class ScribbleBookViewScreen extends ScribbleBookScreen<Component> {
     protected BookViewScreen.BookAccess book;
 
+    // The caches of every text area, which outlive the widgets when the screen is resized.
+    private final List<BookTextWidget.Cache> textAreaCaches = new ArrayList<>();
+
     public ScribbleBookViewScreen(BookViewScreen.BookAccess book) {
         super(Component.translatable("book.view.title"));
         this.book = book;
@@ -39,6 +43,14 @@ public class ScribbleBookViewScreen extends ScribbleBookScreen<Component> {
                 Component.translatable("text.scribble.action.save_book_to_file"),
                 this::saveBookToFile,
                 x, y, 48, 90, 12, 12));
+        addRenderableWidget(new IconButtonWidget(
+                Component.translatable("text.scribble.action.overview"),
+                this::openOverview,
+                x, y + 12 + 4, 84, 90, 12, 12));
+        addRenderableWidget(new IconButtonWidget(
+                Component.translatable("text.scribble.action.reader"),
+                () -> this.minecraft.setScreen(new BookReaderScreen(this)),
+                x, y + 12 * 2 + 4, 108, 90, 12, 12));
     }
 
     @Override
@@ -49,7 +61,12 @@ public class ScribbleBookViewScreen extends ScribbleBookScreen<Component> {
 
     @Override
     protected TextArea<Component> createTextArea(int x, int y, int width, int height, int pageOffset) {
-        return new BookTextWidget(x, y, width, height, this.font, this::handleClickEvent);
+        while (this.textAreaCaches.size() <= pageOffset) {
+            this.textAreaCaches.add(new BookTextWidget.Cache());
+        }
+
+        return new BookTextWidget(x, y, width, height, this.font, this::handleClickEvent,
+                this.textAreaCaches.get(pageOffset));
     }
 
     @Override
@@ -57,6 +74,11 @@ public class ScribbleBookViewScreen extends ScribbleBookScreen<Component> {
         return book.getPage(page);
     }
 
+    @Override
+    protected Component asComponent(Component page) {
+        return page;
+    }
+
     @Override
     protected int getTotalPages() {
         // Always return at least 1 page, so we don't show an empty book (see #100).
@@ -79,7 +101,7 @@ public class ScribbleBookViewScreen extends ScribbleBookScreen<Component> {
         });
     }
 
-    private void handleClickEvent(ClickEvent event) {
+    protected void handleClickEvent(ClickEvent event) {
         switch (event) {
             case ClickEvent.ChangePage(int page) -> this.jumpToPage(page - 1);
             case ClickEvent.RunCommand(String command) -> {
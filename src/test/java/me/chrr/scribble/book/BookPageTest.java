@@ -0,0 +1,26 @@
+package me.chrr.scribble.book;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookPageTest {
+    @Test
+    void isEmptyMatchesParsedText() {
+        Random random = new Random(8);
+        String alphabet = "§§§lrxa ";
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            String formattedString = builder.toString();
+            boolean empty = RichText.fromFormattedString(formattedString).isEmpty();
+            assertEquals(empty, BookPage.fromFormattedString(formattedString).isEmpty(), () -> "isEmpty of " + formattedString);
+        }
+    }
+}
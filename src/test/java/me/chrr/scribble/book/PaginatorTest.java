@@ -0,0 +1,204 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaginatorTest {
+    private static final AdvanceProvider ADVANCES =
+            (codePoint, style) -> (codePoint == ' ' ? 4.0f : 6.0f) + (style.hasModifier(ChatFormatting.BOLD) ? 1.0f : 0.0f);
+
+    @Test
+    void pagesCoverTextAndFit() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            int maxWidth = 20 + random.nextInt(80);
+            int maxLines = 2 + random.nextInt(5);
+            int maxPages = 1 + random.nextInt(20);
+            RichText text = TestTexts.randomText(random, random.nextInt(400));
+
+            Paginator.Pages pages = Paginator.paginate(text, maxWidth, maxLines, maxPages, ADVANCES);
+
+            int offset = 0;
+            for (int page = 0; page < pages.pages().size(); page++) {
+                RichText content = pages.pages().get(page);
+                int end = offset + content.getLength();
+
+                assertEquals(offset, pages.starts()[page], "start of page " + page);
+                assertEquals(text.subText(offset, end), content, "text of page " + page);
+                assertTrue(!content.isEmpty(), "page " + page + " is empty");
+                assertTrue(TextLayout.of(content, maxWidth, ADVANCES).getLineCount() <= maxLines,
+                        "page " + page + " doesn't fit");
+
+                offset = end;
+            }
+
+            assertEquals(offset, pages.end(), "end of the last page");
+            assertTrue(offset == text.getLength() || pages.pages().size() == maxPages, "stopped before running out of pages");
+        }
+    }
+
+    @Test
+    void pagesAreFilledGreedily() {
+        Random random = new Random(4);
+        for (int i = 0; i < 2000; i++) {
+            int maxWidth = 20 + random.nextInt(80);
+            int maxLines = 2 + random.nextInt(5);
+            RichText text = TestTexts.randomText(random, random.nextInt(400));
+
+            Paginator.Pages pages = Paginator.paginate(text, maxWidth, maxLines, 100, ADVANCES);
+
+            // Every page but the last one would get too long if it took the next line.
+            for (int page = 0; page + 1 < pages.pages().size(); page++) {
+                int start = pages.starts()[page];
+                int nextStart = pages.starts()[page + 1];
+                TextLayout rest = TextLayout.of(text.subText(start, text.getLength()), maxWidth, ADVANCES);
+
+                int cut = nextStart - start;
+                boolean beforeNewline = rest.getLineEnd(maxLines - 1) == cut && text.getPlainText().charAt(nextStart) == '\n';
+                assertTrue(beforeNewline || rest.getLineStart(maxLines) == cut, "page " + page + " isn't full");
+            }
+        }
+    }
+
+    @Test
+    void fitCutsInsertionWhereTheRestFits() {
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            int maxWidth = 20 + random.nextInt(80);
+            int maxLines = 2 + random.nextInt(5);
+            RichText before = TestTexts.randomText(random, random.nextInt(100));
+            RichText insert = TestTexts.randomText(random, random.nextInt(300));
+            RichText after = random.nextBoolean() ? RichText.EMPTY : TestTexts.randomText(random, random.nextInt(60));
+
+            int fit = Paginator.fit(before, insert, after, maxWidth, maxLines, ADVANCES);
+            assertTrue(fit >= 0 && fit <= insert.getLength(), "fit out of range");
+            assertTrue(fit == 0 || fits(before, insert, after, fit, maxWidth, maxLines), "prefix of " + fit + " doesn't fit");
+
+            // Without text after it, the insertion is cut where the page ends. With text
+            // after it, it's cut at the last word that still leaves room for that text.
+            int fitWithoutAfter = Paginator.fit(before, insert, RichText.EMPTY, maxWidth, maxLines, ADVANCES);
+            assertTrue(fit <= fitWithoutAfter, "fit is longer with text after it");
+            if (after.isEmpty()) {
+                continue;
+            }
+
+            String plain = insert.getPlainText();
+            for (int length = fit + 1; length < fitWithoutAfter; length++) {
+                if (plain.charAt(length - 1) == ' ') {
+                    assertTrue(!fits(before, insert, after, length, maxWidth, maxLines),
+                            "the longer prefix " + length + " than " + fit + " fits");
+                }
+            }
+        }
+    }
+
+    private static boolean fits(RichText before, RichText insert, RichText after, int length, int maxWidth, int maxLines) {
+        RichText text = before.insert(before.getLength(), insert.subText(0, length)).insert(before.getLength() + length, after);
+        return TextLayout.of(text, maxWidth, ADVANCES).getLineCount() <= maxLines;
+    }
+
+    @Test
+    void reflowJoinsPagesWithSpace() {
+        List<RichText> pages = List.of(RichText.fromFormattedString("hello"), RichText.fromFormattedString("world"));
+        List<RichText> reflowed = Paginator.reflow(pages, 100, 14, 100, ADVANCES);
+        assertEquals(List.of(RichText.fromFormattedString("hello world")), reflowed, "words across a boundary");
+
+        pages = List.of(RichText.fromFormattedString("hello "), RichText.fromFormattedString("world"));
+        reflowed = Paginator.reflow(pages, 100, 14, 100, ADVANCES);
+        assertEquals(List.of(RichText.fromFormattedString("hello world")), reflowed, "boundary after a space");
+    }
+
+    @Test
+    void reflowKeepsPageBreaksAndEmptyPages() {
+        List<RichText> pages = List.of(
+                RichText.fromFormattedString("one\n"),
+                RichText.fromFormattedString("two"),
+                RichText.EMPTY,
+                RichText.fromFormattedString("three"));
+
+        List<RichText> reflowed = Paginator.reflow(pages, 100, 14, 100, ADVANCES);
+        assertEquals(pages, reflowed, "page breaks and empty pages");
+    }
+
+    @Test
+    void reflowKeepsPageBreakAfterFullPage() {
+        // Every word fills a line of its own, so the two pages together fill a page.
+        RichText full = RichText.fromFormattedString("aaaaa ".repeat(9) + "aaaaa");
+        RichText rest = RichText.fromFormattedString("bbbbb ".repeat(3) + "bbbbb\n");
+        RichText next = RichText.fromFormattedString("c");
+
+        List<RichText> reflowed = Paginator.reflow(List.of(full, rest, next), 30, 14, 100, ADVANCES);
+        RichText page = RichText.fromFormattedString("aaaaa ".repeat(10) + "bbbbb ".repeat(3) + "bbbbb");
+        assertEquals(List.of(page, next), reflowed, "page break after a full page");
+        assertEquals(reflowed, Paginator.reflow(reflowed, 30, 14, 100, ADVANCES), "reflowing again");
+
+        reflowed = Paginator.reflow(List.of(full, rest), 30, 14, 1, ADVANCES);
+        assertEquals(List.of(page), reflowed, "page break after the last page");
+    }
+
+    @Test
+    void reflowFitsAndIsStable() {
+        Random random = new Random(6);
+        for (int i = 0; i < 1000; i++) {
+            // Words are short enough to never be broken over two lines.
+            int maxWidth = 60 + random.nextInt(60);
+            int maxLines = 2 + random.nextInt(5);
+
+            List<RichText> pages = new ArrayList<>();
+            int count = random.nextInt(8);
+            for (int page = 0; page < count; page++) {
+                pages.add(random.nextInt(4) == 0 ? RichText.EMPTY : randomWords(random, random.nextInt(30)));
+            }
+
+            List<RichText> reflowed = Paginator.reflow(pages, maxWidth, maxLines, 100, ADVANCES);
+            assertTrue(reflowed != null, "ran out of pages");
+
+            assertEquals(words(pages), words(reflowed), "words after reflowing");
+            for (RichText page : reflowed) {
+                assertTrue(TextLayout.of(page, maxWidth, ADVANCES).getLineCount() <= maxLines, "page doesn't fit");
+            }
+
+            assertEquals(reflowed, Paginator.reflow(reflowed, maxWidth, maxLines, 100, ADVANCES), "reflowing again");
+        }
+    }
+
+    private static RichText randomWords(Random random, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0 || random.nextInt(4) == 0) {
+                builder.append(random.nextInt(8) == 0 ? '\n' : ' ');
+            }
+
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                builder.append((char) ('a' + random.nextInt(8)));
+            }
+        }
+
+        if (random.nextInt(4) == 0) {
+            builder.append(random.nextBoolean() ? '\n' : ' ');
+        }
+
+        return RichText.fromFormattedString(builder.toString());
+    }
+
+    private static List<String> words(List<RichText> pages) {
+        List<String> words = new ArrayList<>();
+        for (RichText page : pages) {
+            for (String word : page.getPlainText().split("[ \n]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+
+        return words;
+    }
+}
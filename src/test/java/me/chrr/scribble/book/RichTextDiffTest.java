@@ -0,0 +1,77 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RichTextDiffTest {
+    private static final ChatFormatting[] COLORS = {ChatFormatting.BLACK, ChatFormatting.RED, ChatFormatting.BLUE};
+    private static final ChatFormatting[] MODIFIERS = {ChatFormatting.BOLD, ChatFormatting.ITALIC, ChatFormatting.UNDERLINE};
+
+    @Test
+    void applyingDiffGivesOtherText() {
+        Random random = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            RichText a = TestTexts.randomText(random, random.nextInt(25));
+            RichText b = random.nextInt(5) == 0 ? TestTexts.randomText(random, random.nextInt(25)) : randomEdits(random, a);
+
+            List<RichTextEdit> edits = a.diff(b);
+            assertEquals(b, a.apply(edits), () -> "apply(diff) of " + a + " and " + b + " with " + edits);
+            assertEquals(a.equals(b), edits.isEmpty(), "diff is empty only for equal texts");
+        }
+    }
+
+    @Test
+    void diffOfLongTexts() {
+        Random random = new Random(6);
+        RichText a = new RichText(randomString(random, 3000), RichStyle.DEFAULT);
+        RichText b = new RichText(randomString(random, 3000), RichStyle.DEFAULT);
+
+        assertEquals(b, a.apply(a.diff(b)), "apply(diff) of long texts");
+    }
+
+    @Test
+    void diffOfFormattingOnlyChange() {
+        RichText a = RichText.fromFormattedString("hello world");
+        RichText b = a.applyFormatting(6, 11, ChatFormatting.RED, Set.of(ChatFormatting.BOLD), Set.of());
+
+        List<RichTextEdit> edits = a.diff(b);
+        assertEquals(b, a.apply(edits), "apply(diff) of restyled text");
+        assertTrue(!edits.isEmpty(), "restyling is a change");
+    }
+
+    private static RichText randomEdits(Random random, RichText text) {
+        int edits = random.nextInt(4);
+        for (int i = 0; i < edits; i++) {
+            int length = text.getLength();
+            int start = random.nextInt(length + 1);
+            int end = start + random.nextInt(length - start + 1);
+
+            switch (random.nextInt(3)) {
+                case 0 -> text = text.insert(start, TestTexts.randomText(random, 1 + random.nextInt(3)));
+                case 1 -> text = text.replace(start, end, RichText.EMPTY);
+                default -> text = text.applyFormatting(start, end,
+                        random.nextBoolean() ? null : COLORS[random.nextInt(COLORS.length)],
+                        Set.of(MODIFIERS[random.nextInt(MODIFIERS.length)]), Set.of());
+            }
+        }
+
+        return text;
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(10);
+            builder.append(kind == 0 ? '\n' : kind < 3 ? ' ' : (char) ('a' + random.nextInt(5)));
+        }
+
+        return builder.toString();
+    }
+}
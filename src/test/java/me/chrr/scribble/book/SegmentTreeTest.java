@@ -0,0 +1,127 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentTreeTest {
+    private static final RichStyle[] STYLES = {
+            RichStyle.DEFAULT,
+            RichStyle.of(ChatFormatting.RED, 0),
+            RichStyle.of(ChatFormatting.BLUE, RichStyle.maskOf(ChatFormatting.BOLD)),
+    };
+
+    @Test
+    void splitKeepsTextAndBalance() {
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            List<RichText.Segment> segments = randomSegments(random, random.nextInt(40));
+            SegmentTree.Node tree = SegmentTree.fromList(segments);
+            String text = plainText(SegmentTree.toList(tree));
+            checkTree(tree);
+
+            for (int offset = 0; offset <= text.length(); offset++) {
+                SegmentTree.Split split = SegmentTree.split(tree, offset);
+                checkTree(split.left());
+                checkTree(split.right());
+
+                assertEquals(text.substring(0, offset), plainText(SegmentTree.toList(split.left())), "left of " + offset);
+                assertEquals(text.substring(offset), plainText(SegmentTree.toList(split.right())), "right of " + offset);
+            }
+        }
+    }
+
+    @Test
+    void joinAndConcatKeepOrderAndBalance() {
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            // Trees of very different sizes, so joining has to descend and rebalance.
+            List<RichText.Segment> left = randomSegments(random, random.nextInt(random.nextBoolean() ? 4 : 100));
+            List<RichText.Segment> right = randomSegments(random, random.nextInt(random.nextBoolean() ? 4 : 100));
+            RichText.Segment middle = randomSegment(random);
+
+            SegmentTree.Node joined = SegmentTree.join(SegmentTree.fromList(left), middle, SegmentTree.fromList(right));
+            checkTree(joined);
+
+            List<RichText.Segment> expected = new ArrayList<>(left);
+            expected.add(middle);
+            expected.addAll(right);
+            assertEquals(expected, SegmentTree.toList(joined), "joined segments");
+
+            SegmentTree.Node concatenated = SegmentTree.concat(SegmentTree.fromList(left), SegmentTree.fromList(right));
+            checkTree(concatenated);
+            assertEquals(plainText(left) + plainText(right), plainText(SegmentTree.toList(concatenated)), "concatenated text");
+        }
+    }
+
+    @Test
+    void segmentAtFindsContainingSegment() {
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            List<RichText.Segment> segments = randomSegments(random, 1 + random.nextInt(40));
+            SegmentTree.Node tree = SegmentTree.fromList(segments);
+            assertTrue(tree != null);
+
+            int start = 0;
+            for (RichText.Segment segment : segments) {
+                for (int offset = start; offset < start + segment.text().length(); offset++) {
+                    assertEquals(segment, SegmentTree.segmentAt(tree, offset), "segment at " + offset);
+                }
+
+                start += segment.text().length();
+            }
+        }
+    }
+
+    /**
+     * Check that every node is balanced, and that the lengths and counts it caches
+     * are correct.
+     */
+    private static void checkTree(SegmentTree.@Nullable Node node) {
+        if (node == null) {
+            return;
+        }
+
+        checkTree(node.left);
+        checkTree(node.right);
+
+        assertTrue(Math.abs(SegmentTree.height(node.left) - SegmentTree.height(node.right)) <= 1, "unbalanced node");
+        assertEquals(Math.max(SegmentTree.height(node.left), SegmentTree.height(node.right)) + 1, node.height, "height");
+        assertEquals(SegmentTree.length(node.left) + node.segment.text().length() + SegmentTree.length(node.right),
+                node.length, "length");
+        assertEquals(SegmentTree.count(node.left) + 1 + SegmentTree.count(node.right), node.count, "count");
+        assertTrue(!node.segment.text().isEmpty(), "empty segment");
+    }
+
+    private static String plainText(List<RichText.Segment> segments) {
+        StringBuilder builder = new StringBuilder();
+        segments.forEach((segment) -> builder.append(segment.text()));
+        return builder.toString();
+    }
+
+    private static List<RichText.Segment> randomSegments(Random random, int count) {
+        List<RichText.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            segments.add(randomSegment(random));
+        }
+
+        return segments;
+    }
+
+    private static RichText.Segment randomSegment(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+
+        return new RichText.Segment(builder.toString(), STYLES[random.nextInt(STYLES.length)]);
+    }
+}
@@ -0,0 +1,56 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random texts for the tests of the book classes.
+ */
+final class TestTexts {
+    private static final ChatFormatting[] COLORS = {ChatFormatting.BLACK, ChatFormatting.RED, ChatFormatting.BLUE};
+
+    private TestTexts() {
+    }
+
+    /**
+     * Make a random text out of runs with a random color, some of them bold. Next to
+     * short words, spaces and newlines, it has a few characters that are measured
+     * differently: a wide 'W', and a combining accent that has no width of its own.
+     *
+     * @param random the random to use.
+     * @param length the length of the text.
+     * @return the text.
+     */
+    static RichText randomText(Random random, int length) {
+        List<RichText.Segment> segments = new ArrayList<>();
+        int remaining = length;
+        while (remaining > 0) {
+            int segmentLength = 1 + random.nextInt(remaining);
+            remaining -= segmentLength;
+
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < segmentLength; i++) {
+                int kind = random.nextInt(30);
+                if (kind == 0) {
+                    builder.append('\n');
+                } else if (kind < 6) {
+                    builder.append(' ');
+                } else if (kind == 6) {
+                    builder.append('́');
+                } else if (kind == 7) {
+                    builder.append('W');
+                } else {
+                    builder.append((char) ('a' + random.nextInt(9)));
+                }
+            }
+
+            int modifiers = random.nextInt(3) == 0 ? RichStyle.maskOf(ChatFormatting.BOLD) : 0;
+            segments.add(new RichText.Segment(builder.toString(), RichStyle.of(COLORS[random.nextInt(COLORS.length)], modifiers)));
+        }
+
+        return new RichText(segments);
+    }
+}
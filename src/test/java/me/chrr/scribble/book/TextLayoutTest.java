@@ -0,0 +1,105 @@
+package me.chrr.scribble.book;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.StringSplitter;
+import net.minecraft.network.chat.Style;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link TextLayout} breaks lines in the same places as vanilla's
+ * {@link StringSplitter}, which is what the text field used before.
+ */
+class TextLayoutTest {
+    @Test
+    void linesMatchVanillaSplitter() {
+        Random random = new Random(7);
+        StringSplitter splitter = new StringSplitter((codePoint, style) -> advance(codePoint, style.isBold()));
+        AdvanceProvider advances = (codePoint, style) -> advance(codePoint, style.hasModifier(ChatFormatting.BOLD));
+
+        for (int i = 0; i < 2000; i++) {
+            RichText text = TestTexts.randomText(random, 1 + random.nextInt(200));
+            int maxWidth = 10 + random.nextInt(100);
+
+            List<int[]> expected = splitVanilla(splitter, text, maxWidth);
+            TextLayout layout = TextLayout.of(text, maxWidth, advances);
+
+            assertEquals(expected.size(), layout.getLineCount(), () -> "line count of " + text);
+            for (int line = 0; line < expected.size(); line++) {
+                assertEquals(expected.get(line)[0], layout.getLineStart(line), "start of line " + line + " of " + text);
+                assertEquals(expected.get(line)[1], layout.getLineEnd(line), "end of line " + line + " of " + text);
+            }
+        }
+    }
+
+    @Test
+    void relayoutMatchesFreshLayout() {
+        Random random = new Random(11);
+        AdvanceProvider advances = (codePoint, style) -> advance(codePoint, style.hasModifier(ChatFormatting.BOLD));
+
+        for (int i = 0; i < 500; i++) {
+            int maxWidth = 10 + random.nextInt(100);
+            RichText text = TestTexts.randomText(random, 1 + random.nextInt(200));
+            TextLayout layout = TextLayout.of(text, maxWidth, advances);
+
+            for (int edit = 0; edit < 20; edit++) {
+                int length = text.getLength();
+                int start = random.nextInt(length + 1);
+                int end = start + random.nextInt(Math.min(length - start, 6) + 1);
+                text = text.replace(start, end, random.nextBoolean() ? RichText.EMPTY : TestTexts.randomText(random, 1 + random.nextInt(8)));
+
+                layout = layout.relayout(text);
+                TextLayout fresh = TextLayout.of(text, maxWidth, advances);
+
+                assertEquals(fresh.getLineCount(), layout.getLineCount(), "line count after edit " + edit);
+                for (int line = 0; line < fresh.getLineCount(); line++) {
+                    assertEquals(fresh.getLineStart(line), layout.getLineStart(line), "start of line " + line);
+                    assertEquals(fresh.getLineEnd(line), layout.getLineEnd(line), "end of line " + line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a text into lines the way the text field did before it had its own line
+     * breaker: using the string splitter, skipping the space or newline it broke on.
+     */
+    private static List<int[]> splitVanilla(StringSplitter splitter, RichText text, int maxWidth) {
+        String plain = text.getPlainText();
+        List<int[]> lines = new ArrayList<>();
+        int[] current = {0};
+
+        splitter.splitLines(text, maxWidth, Style.EMPTY, (line, continued) -> {
+            int start = current[0];
+            int end = start + line.getString().length();
+            lines.add(new int[]{start, end});
+
+            if (plain.length() > end) {
+                char c = plain.charAt(end);
+                end += (c == '\n' || c == ' ') ? 1 : 0;
+            }
+
+            current[0] = end;
+        });
+
+        return lines;
+    }
+
+    private static float advance(int codePoint, boolean bold) {
+        float advance = switch (codePoint) {
+            case ' ' -> 4.0f;
+            case 'i' -> 2.0f;
+            case 'W' -> 7.5f;
+            // A combining accent, which has no width of its own.
+            case '́' -> 0.0f;
+            default -> 5.25f + codePoint % 3;
+        };
+
+        return advance > 0.0f && bold ? advance + 1.0f : advance;
+    }
+}